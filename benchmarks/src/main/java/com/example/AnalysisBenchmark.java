@@ -0,0 +1,105 @@
+package com.example;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.mapping.HashMappingIndex;
+import com.example.mapping.MappingIndex;
+
+/**
+ * The analysis phases of {@link JarRenamer#execute()} one at a time. Each
+ * invocation gets a fresh renamer with the earlier phases already run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnalysisBenchmark {
+
+    @State(Scope.Thread)
+    public static class Input {
+        MappingIndex mappingIndex;
+        ZipFile zipFile;
+
+        @Setup(Level.Trial)
+        public void open(SyntheticJarState jar) throws IOException {
+            mappingIndex = HashMappingIndex.load(jar.mappingFile);
+            zipFile = new ZipFile(jar.jarFile);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            zipFile.close();
+        }
+
+        JarRenamer newRenamer(SyntheticJarState jar) {
+            return new JarRenamer(jar.jarFile, mappingIndex, null);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Fresh {
+        JarRenamer renamer;
+
+        @Setup(Level.Invocation)
+        public void prepare(SyntheticJarState jar, Input input) {
+            renamer = input.newRenamer(jar);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Ingested {
+        JarRenamer renamer;
+
+        @Setup(Level.Invocation)
+        public void prepare(SyntheticJarState jar, Input input) throws IOException {
+            renamer = input.newRenamer(jar);
+            renamer.ingest(input.zipFile);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MembersAnalysed {
+        JarRenamer renamer;
+
+        @Setup(Level.Invocation)
+        public void prepare(SyntheticJarState jar, Input input) throws IOException {
+            renamer = input.newRenamer(jar);
+            renamer.ingest(input.zipFile);
+            renamer.analyzeFieldsAndMethods();
+        }
+    }
+
+    @Benchmark
+    public JarRenamer ingest(Fresh state, Input input) throws IOException {
+        state.renamer.ingest(input.zipFile);
+        return state.renamer;
+    }
+
+    @Benchmark
+    public JarRenamer memberAnalysis(Ingested state) {
+        state.renamer.analyzeFieldsAndMethods();
+        return state.renamer;
+    }
+
+    @Benchmark
+    public JarRenamer stringAnalysis(MembersAnalysed state) throws IOException {
+        state.renamer.analyzeStrings();
+        return state.renamer;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.mapping.HashMappingIndex;
+import com.example.mapping.MappingIndex;
+
+/**
+ * Whole {@link JarRenamer#execute()} runs. Besides runs per second, the
+ * {@code classes} and {@code megabytes} counters report classes/sec and
+ * input MB/sec.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Setting {
+        @Param({"1", "0"})
+        public int workers;
+
+        @Param({"false", "true"})
+        public boolean rawCopy;
+
+        MappingIndex mappingIndex;
+        RenamerOptions options;
+
+        @Setup(Level.Trial)
+        public void prepare(SyntheticJarState jar) throws IOException {
+            mappingIndex = HashMappingIndex.load(jar.mappingFile);
+            options = new RenamerOptions();
+            options.setWorkerCount(workers);
+            options.setRawCopy(rawCopy);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public long classes;
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            classes = 0;
+            megabytes = 0;
+        }
+    }
+
+    @Benchmark
+    public File execute(SyntheticJarState jar, Setting setting, Throughput throughput) throws IOException {
+        File output = new JarRenamer(jar.jarFile, setting.mappingIndex, null, setting.options).execute();
+        throughput.classes += jar.classCount;
+        throughput.megabytes += jar.jarFile.length() / (1024.0 * 1024.0);
+        return output;
+    }
+}
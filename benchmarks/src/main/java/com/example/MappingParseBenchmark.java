@@ -0,0 +1,34 @@
+package com.example;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.mapping.HashMappingIndex;
+import com.example.mapping.MappingIndex;
+
+/** Parsing {@code codedata.txt} into the lookup index and into the legacy node lists. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MappingParseBenchmark {
+
+    @Benchmark
+    public MappingIndex hashIndex(SyntheticJarState jar) throws IOException {
+        return HashMappingIndex.load(jar.mappingFile);
+    }
+
+    @Benchmark
+    public JEBJsonParser nodeLists(SyntheticJarState jar) throws IOException {
+        return new JEBJsonParser(jar.mappingFile);
+    }
+}
@@ -0,0 +1,252 @@
+package com.example;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes an obfuscated-looking jar and a matching JEB {@code codedata.txt}.
+ * Classes get short names in short packages, extend each other or implement
+ * generated interfaces, reference members of other classes and load strings
+ * that spell out class names. The same seed always produces the same files.
+ */
+public class SyntheticJarGenerator {
+    private static final int CLASSES_PER_PACKAGE = 64;
+    private static final int INTERFACE_EVERY = 8;
+    private static final int RESOURCE_EVERY = 50;
+
+    private final int classCount;
+    private final double renamedRatio;
+    private final long seed;
+
+    public SyntheticJarGenerator(int classCount, double renamedRatio, long seed) {
+        this.classCount = classCount;
+        this.renamedRatio = renamedRatio;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticJarGenerator <output dir> <class count> [renamed ratio] [seed]");
+            System.exit(1);
+        }
+        File directory = new File(args[0]);
+        int classCount = Integer.parseInt(args[1]);
+        double renamedRatio = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        SyntheticJarGenerator generator = new SyntheticJarGenerator(classCount, renamedRatio, seed);
+        File jar = new File(directory, "synthetic-" + classCount + ".jar");
+        File mapping = new File(directory, "codedata-" + classCount + ".txt");
+        generator.writeJar(jar);
+        generator.writeMapping(mapping);
+        System.out.println("Jar: " + jar.getAbsolutePath());
+        System.out.println("Mapping: " + mapping.getAbsolutePath());
+    }
+
+    public void writeJar(File jarFile) throws IOException {
+        if (jarFile.getParentFile() != null) {
+            jarFile.getParentFile().mkdirs();
+        }
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile), manifest)) {
+            Random random = new Random(seed);
+            for (int i = 0; i < classCount; i++) {
+                out.putNextEntry(new JarEntry(className(i) + ".class"));
+                out.write(isInterface(i) ? generateInterface(i) : generateClass(i, random));
+                out.closeEntry();
+                if (i % RESOURCE_EVERY == 0) {
+                    out.putNextEntry(new JarEntry("res/" + className(i) + ".properties"));
+                    out.write(("owner=" + className(i).replace('/', '.') + "\n").getBytes(StandardCharsets.UTF_8));
+                    out.closeEntry();
+                }
+            }
+        }
+    }
+
+    public void writeMapping(File mappingFile) throws IOException {
+        if (mappingFile.getParentFile() != null) {
+            mappingFile.getParentFile().mkdirs();
+        }
+        Random random = new Random(seed ^ 0x5DEECE66DL);
+        JsonFactory factory = new JsonFactory();
+        try (JsonGenerator json = factory.createGenerator(mappingFile, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeObjectFieldStart("synthetic");
+            json.writeObjectFieldStart("unit");
+
+            boolean[] renamed = new boolean[classCount];
+            json.writeObjectFieldStart("renamed_classes");
+            for (int i = 0; i < classCount; i++) {
+                renamed[i] = random.nextDouble() < renamedRatio;
+                if (renamed[i]) {
+                    json.writeStringField("L" + className(i) + ";", (isInterface(i) ? "Contract" : "Component") + i);
+                }
+            }
+            json.writeEndObject();
+
+            json.writeObjectFieldStart("renamed_methods");
+            for (int i = 0; i < classCount; i++) {
+                if (!renamed[i]) {
+                    continue;
+                }
+                String owner = "L" + className(i) + ";->";
+                json.writeStringField(owner + "a(I)I", "compute");
+                if (!isInterface(i)) {
+                    json.writeStringField(owner + "b()Ljava/lang/String;", "describe");
+                    json.writeStringField(owner + "c(L" + peerName(i) + ";)V", "link");
+                }
+            }
+            json.writeEndObject();
+
+            json.writeObjectFieldStart("renamed_fields");
+            for (int i = 0; i < classCount; i++) {
+                if (!renamed[i] || isInterface(i)) {
+                    continue;
+                }
+                String owner = "L" + className(i) + ";->";
+                json.writeStringField(owner + "a:I", "count");
+                json.writeStringField(owner + "b:Ljava/lang/String;", "label");
+                json.writeStringField(owner + "c:L" + peerName(i) + ";", "peer");
+            }
+            json.writeEndObject();
+
+            json.writeEndObject();
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+    }
+
+    private byte[] generateInterface(int index) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE,
+                className(index), null, "java/lang/Object", null);
+        writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "a", "(I)I", null, null).visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private byte[] generateClass(int index, Random random) {
+        String name = className(index);
+        String superName = superName(index, random);
+        String peer = peerName(index);
+        String peerDescriptor = "L" + peer + ";";
+        String[] interfaces = {className(index - index % INTERFACE_EVERY)};
+
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, superName, interfaces);
+        writer.visitField(Opcodes.ACC_PUBLIC, "a", "I", null, null).visitEnd();
+        writer.visitField(Opcodes.ACC_PRIVATE, "b", "Ljava/lang/String;", null, null).visitEnd();
+        writer.visitField(Opcodes.ACC_PROTECTED, "c", peerDescriptor, null, null).visitEnd();
+
+        MethodVisitor init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitLdcInsn(className(random.nextInt(classCount)).replace('/', '.'));
+        init.visitFieldInsn(Opcodes.PUTFIELD, name, "b", "Ljava/lang/String;");
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor compute = writer.visitMethod(Opcodes.ACC_PUBLIC, "a", "(I)I", null, null);
+        compute.visitCode();
+        compute.visitVarInsn(Opcodes.ALOAD, 0);
+        compute.visitFieldInsn(Opcodes.GETFIELD, name, "a", "I");
+        compute.visitVarInsn(Opcodes.ILOAD, 1);
+        compute.visitInsn(Opcodes.IADD);
+        compute.visitLdcInsn(random.nextInt(1 << 20));
+        compute.visitInsn(Opcodes.IXOR);
+        compute.visitInsn(Opcodes.IRETURN);
+        compute.visitMaxs(0, 0);
+        compute.visitEnd();
+
+        MethodVisitor describe = writer.visitMethod(Opcodes.ACC_PUBLIC, "b", "()Ljava/lang/String;", null, null);
+        describe.visitCode();
+        describe.visitVarInsn(Opcodes.ALOAD, 0);
+        describe.visitFieldInsn(Opcodes.GETFIELD, name, "b", "Ljava/lang/String;");
+        describe.visitInsn(Opcodes.ARETURN);
+        describe.visitMaxs(0, 0);
+        describe.visitEnd();
+
+        MethodVisitor link = writer.visitMethod(Opcodes.ACC_PUBLIC, "c", "(" + peerDescriptor + ")V", null, null);
+        link.visitCode();
+        link.visitVarInsn(Opcodes.ALOAD, 0);
+        link.visitVarInsn(Opcodes.ALOAD, 1);
+        link.visitFieldInsn(Opcodes.PUTFIELD, name, "c", peerDescriptor);
+        link.visitVarInsn(Opcodes.ALOAD, 1);
+        link.visitVarInsn(Opcodes.ALOAD, 0);
+        link.visitFieldInsn(Opcodes.GETFIELD, name, "a", "I");
+        link.visitMethodInsn(Opcodes.INVOKEVIRTUAL, peer, "a", "(I)I", false);
+        link.visitInsn(Opcodes.POP);
+        link.visitInsn(Opcodes.RETURN);
+        link.visitMaxs(0, 0);
+        link.visitEnd();
+
+        MethodVisitor helper = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "d",
+                "()Ljava/lang/String;", null, null);
+        helper.visitCode();
+        helper.visitLdcInsn("value-" + random.nextInt(1000));
+        helper.visitInsn(Opcodes.ARETURN);
+        helper.visitMaxs(0, 0);
+        helper.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /** A concrete class to extend: one of the few classes before this one, or {@code Object}. */
+    private String superName(int index, Random random) {
+        if (index > 0 && random.nextInt(3) == 0) {
+            int candidate = index - 1 - random.nextInt(Math.min(index, 4));
+            if (!isInterface(candidate)) {
+                return className(candidate);
+            }
+        }
+        return "java/lang/Object";
+    }
+
+    /** The concrete class each class keeps a reference to; the next one, wrapping around. */
+    private String peerName(int index) {
+        int peer = (index + 1) % classCount;
+        while (isInterface(peer)) {
+            peer = (peer + 1) % classCount;
+        }
+        return className(peer);
+    }
+
+    private static boolean isInterface(int index) {
+        return index % INTERFACE_EVERY == 0;
+    }
+
+    static String className(int index) {
+        return "o/" + shortName(index / CLASSES_PER_PACKAGE) + "/" + shortName(index % CLASSES_PER_PACKAGE);
+    }
+
+    /** a, b, ..., z, aa, ab, ... */
+    private static String shortName(int value) {
+        StringBuilder name = new StringBuilder();
+        int remaining = value;
+        do {
+            name.insert(0, (char) ('a' + remaining % 26));
+            remaining = remaining / 26 - 1;
+        } while (remaining >= 0);
+        return name.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A generated jar and mapping shared by every benchmark in a trial. Run with
+ * {@code -p classCount=200000} for the large end of the range. The renamer's
+ * progress output on {@code System.err} is discarded while benchmarks run.
+ */
+@State(Scope.Benchmark)
+public class SyntheticJarState {
+    @Param({"1000", "10000"})
+    public int classCount;
+
+    @Param({"0.5"})
+    public double renamedRatio;
+
+    public File jarFile;
+    public File mappingFile;
+
+    private Path directory;
+    private PrintStream originalErr;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        directory = Files.createTempDirectory("jar-rename-bench");
+        jarFile = directory.resolve("synthetic-" + classCount + ".jar").toFile();
+        mappingFile = directory.resolve("codedata-" + classCount + ".txt").toFile();
+        SyntheticJarGenerator generator = new SyntheticJarGenerator(classCount, renamedRatio, 42);
+        generator.writeJar(jarFile);
+        generator.writeMapping(mappingFile);
+
+        originalErr = System.err;
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        System.setErr(originalErr);
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
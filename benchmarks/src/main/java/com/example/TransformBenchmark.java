@@ -0,0 +1,74 @@
+package com.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.mapping.HashMappingIndex;
+
+/** Rewriting one class at a time, cycling through every class of the jar. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransformBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Analysed {
+        @Param({"false", "true"})
+        public boolean preserveFrames;
+
+        JarRenamer renamer;
+        List<byte[]> classes = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void prepare(SyntheticJarState jar) throws IOException {
+            RenamerOptions options = new RenamerOptions();
+            options.setPreserveFrames(preserveFrames);
+            renamer = new JarRenamer(jar.jarFile, HashMappingIndex.load(jar.mappingFile), null, options);
+            try (ZipFile zipFile = new ZipFile(jar.jarFile)) {
+                renamer.ingest(zipFile);
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.getName().endsWith(".class")) {
+                        classes.add(zipFile.getInputStream(entry).readAllBytes());
+                    }
+                }
+            }
+            renamer.analyzeFieldsAndMethods();
+            renamer.analyzeStrings();
+            renamer.snapshotMappings();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public byte[] transformClass(Analysed state, Cursor cursor) {
+        byte[] classBytes = state.classes.get(cursor.next);
+        cursor.next = (cursor.next + 1) % state.classes.size();
+        return state.renamer.transformClass(classBytes);
+    }
+}
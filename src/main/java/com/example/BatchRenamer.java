@@ -0,0 +1,108 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.example.mapping.MappingIndex;
+
+/**
+ * Renames many jars with one loaded mapping. Jobs run on a bounded pool and
+ * share the read-only {@link MappingIndex}, so a class gets the same new name
+ * in every jar; everything else is per jar. Member names that collide are
+ * suffixed from the classes of each jar alone, so suffixes can differ between
+ * jars. One failing jar does not stop the others.
+ */
+public class BatchRenamer {
+    private final MappingIndex mappingIndex;
+    private final Set<String> excludeClasses;
+    private final RenamerOptions options;
+    private final int parallelJars;
+
+    /** {@code parallelJars} of {@code 0} or less runs as many jars at once as there are cores. */
+    public BatchRenamer(MappingIndex mappingIndex, Set<String> excludeClasses, RenamerOptions options, int parallelJars) {
+        this.mappingIndex = mappingIndex;
+        this.excludeClasses = excludeClasses;
+        this.options = options;
+        this.parallelJars = parallelJars > 0 ? parallelJars : Runtime.getRuntime().availableProcessors();
+    }
+
+    /** Expands directories into the jars directly inside them, skipping earlier {@code -renamed.jar} outputs. */
+    public static List<File> collectJars(List<File> paths) {
+        List<File> jars = new ArrayList<>();
+        for (File path : paths) {
+            if (!path.isDirectory()) {
+                jars.add(path);
+                continue;
+            }
+            File[] children = path.listFiles((dir, name) -> name.endsWith(".jar") && !name.endsWith("-renamed.jar"));
+            if (children != null) {
+                Arrays.sort(children);
+                jars.addAll(Arrays.asList(children));
+            }
+        }
+        return jars;
+    }
+
+    /** Renames every jar and returns one result per jar, in input order. */
+    public List<Result> execute(List<File> jars) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelJars, jars.size())));
+        try {
+            List<Future<File>> futures = new ArrayList<>();
+            for (File jar : jars) {
+                // Every job records into its own metrics and prints its own summary.
+                RenamerOptions jobOptions = new RenamerOptions(options);
+                jobOptions.setMetrics(null);
+                futures.add(pool.submit(() -> new JarRenamer(jar, mappingIndex, excludeClasses, jobOptions).execute()));
+            }
+
+            List<Result> results = new ArrayList<>();
+            for (int i = 0; i < jars.size(); i++) {
+                try {
+                    results.add(new Result(jars.get(i), futures.get(i).get(), null));
+                } catch (ExecutionException e) {
+                    results.add(new Result(jars.get(i), null, e.getCause()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while renaming " + jars.get(i), e);
+                }
+            }
+            return Collections.unmodifiableList(results);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public static final class Result {
+        private final File jarFile;
+        private final File outputFile;
+        private final Throwable error;
+
+        Result(File jarFile, File outputFile, Throwable error) {
+            this.jarFile = jarFile;
+            this.outputFile = outputFile;
+            this.error = error;
+        }
+
+        public File getJarFile() {
+            return jarFile;
+        }
+
+        /** The renamed jar, or {@code null} if the job failed. */
+        public File getOutputFile() {
+            return outputFile;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+    }
+}
@@ -4,12 +4,15 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.mapping.ClassBloomFilter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 public class JEBJsonParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     public List<Node> classNodes = new ArrayList<>();
     public List<Node> methodNodes = new ArrayList<>();
     public List<Node> fieldNodes = new ArrayList<>();
@@ -19,94 +22,188 @@ public class JEBJsonParser {
     }
 
     public void readJEBJson(File jsonFile) throws IOException{
-        ObjectMapper objectMapper = new ObjectMapper();
-        Map<String, Object> originalData = objectMapper.readValue(
-            jsonFile, 
-            new TypeReference<Map<String, Object>>() {}
-        );
-        
-        for (Object o : originalData.values()) {
-            if (o instanceof Map) {
-                Map<?, ?> innerMap = (Map<?, ?>) o;
-                for (Object j : innerMap.values()) {
-                    if (j instanceof Map) {
-                        Map<?, ?> valueMap = (Map<?, ?>) j;
-
-                        if (valueMap.containsKey("renamed_fields")) {
-                            Map<String, String> fieldData = (Map<String, String>)valueMap.get("renamed_fields");
-                            for(String key: fieldData.keySet()){
-                                String normalized = key.replaceAll("L", "")
-                                                .replaceAll(";", "")
-                                                .replaceAll("/", ".");
-                                String[] split = normalized.split("->");
-                                String className = split[0];
-                                String fieldName = split[1];
-                                String[] split1 = fieldName.split(":");
-                                Node node = new Node(){
-                                    {
-                                        owner = className;
-                                        name = split1[0];
-                                        desc = split1[1];
-                                        newName = fieldData.get(key);
-                                    }
-                                };
-                                fieldNodes.add(node);
-                            }
-                        }
-                        if (valueMap.containsKey("renamed_methods")) {
-                            Map<String, String> methodData = (Map<String, String>)valueMap.get("renamed_methods");
-                            for(String key: methodData.keySet()){
-                                String normalized = key.replaceAll("L", "")
-                                                .replaceAll(";", "")
-                                                .replaceAll("/", ".");
-                                String[] split = normalized.split("->");
-                                String className = split[0];
-                                String methodName = split[1];
-                                String[] split1 = methodName.split("\\(");
-                                Node node = new Node(){
-                                    {
-                                        owner = className;
-                                        name = split1[0];
-                                        desc = split1[1];
-                                        newName = methodData.get(key);
-                                    }
-                                };
-                                methodNodes.add(node);
-                            }
-                        }
-                        if (valueMap.containsKey("renamed_classes")) {
-                            Map<String, String> classData = (Map<String, String>)valueMap.get("renamed_classes");
-                            for(String key: classData.keySet()){
-                                String normalized = key.replaceAll("L", "")
-                                                .replaceAll(";", "")
-                                                .replaceAll("/", ".");
-                                String[] split = normalized.split("->");
-                                String className = split[0];
-                                int pos = className.lastIndexOf(".");
-                                String packageName = className.substring(0, pos);
-                                String simpleName = className.substring(pos + 1);
-                                Node node = new Node(){
-                                    {
-                                        owner = packageName;
-                                        name = simpleName;
-                                        desc = className;
-                                        newName = classData.get(key);
-                                    }
-                                };
-                                classNodes.add(node);
-                            }
-                        }
+        parse(jsonFile, new MappingSink() {
+            @Override
+            public void addClass(Node node) {
+                classNodes.add(node);
+            }
+
+            @Override
+            public void addMethod(Node node) {
+                methodNodes.add(node);
+            }
+
+            @Override
+            public void addField(Node node) {
+                fieldNodes.add(node);
+            }
+        });
+    }
+
+    /**
+     * Streams a JEB {@code codedata.txt} export into {@code sink} without building
+     * the JSON tree. Only the {@code renamed_*} maps two levels below the root are read.
+     */
+    public static void parse(File jsonFile, MappingSink sink) throws IOException {
+        parse(jsonFile, sink, null);
+    }
+
+    /**
+     * Same as {@link #parse(File, MappingSink)}, but method and field entries whose
+     * owner is not in {@code owners} are skipped before a node is built for them.
+     * Class entries are always kept. A {@code null} filter keeps everything.
+     */
+    public static void parse(File jsonFile, MappingSink sink, ClassBloomFilter owners) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(jsonFile)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object in " + jsonFile);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    if (parser.nextToken() != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        continue;
                     }
+                    readUnit(parser, sink, owners);
                 }
             }
         }
     }
-    public class Node {
+
+    private static void readUnit(JsonParser parser, MappingSink sink, ClassBloomFilter owners) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String section = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (section) {
+                case "renamed_classes":
+                    readEntries(parser, sink, Kind.CLASS, null);
+                    break;
+                case "renamed_methods":
+                    readEntries(parser, sink, Kind.METHOD, owners);
+                    break;
+                case "renamed_fields":
+                    readEntries(parser, sink, Kind.FIELD, owners);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readEntries(JsonParser parser, MappingSink sink, Kind kind,
+                                    ClassBloomFilter owners) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.VALUE_STRING) {
+                parser.skipChildren();
+                continue;
+            }
+            Node node = decode(key, parser.getText(), kind, owners);
+            if (node == null) {
+                continue;
+            }
+            switch (kind) {
+                case CLASS:
+                    sink.addClass(node);
+                    break;
+                case METHOD:
+                    sink.addMethod(node);
+                    break;
+                case FIELD:
+                    sink.addField(node);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Decodes a Dalvik reference such as {@code Lpkg/Cls;}, {@code Lpkg/Cls;->name(I)V}
+     * or {@code Lpkg/Cls;->name:I}. Returns {@code null} for keys that do not fit the kind
+     * and for keys whose owner {@code owners} rules out.
+     */
+    static Node decode(String key, String newName, Kind kind, ClassBloomFilter owners) {
+        int length = key.length();
+        int start = length > 0 && key.charAt(0) == 'L' ? 1 : 0;
+        int end = key.indexOf(';', start);
+        if (end < 0) {
+            end = key.indexOf("->", start);
+            if (end < 0) {
+                end = length;
+            }
+        }
+        if (end == start) {
+            return null;
+        }
+        if (owners != null && !owners.mightContain(key, start, end)) {
+            return null;
+        }
+
+        char[] chars = new char[end - start];
+        int lastSeparator = -1;
+        for (int i = start; i < end; i++) {
+            char c = key.charAt(i);
+            if (c == '/') {
+                c = '.';
+                lastSeparator = i - start;
+            }
+            chars[i - start] = c;
+        }
+        String className = new String(chars);
+
+        if (kind == Kind.CLASS) {
+            String packageName = lastSeparator < 0 ? "" : className.substring(0, lastSeparator);
+            String simpleName = className.substring(lastSeparator + 1);
+            return new Node(packageName, simpleName, className, newName);
+        }
+
+        int member = key.indexOf("->", end);
+        if (member < 0) {
+            return null;
+        }
+        member += 2;
+        int separator = key.indexOf(kind == Kind.METHOD ? '(' : ':', member);
+        if (separator <= member) {
+            return null;
+        }
+        String name = key.substring(member, separator);
+        String desc = key.substring(kind == Kind.METHOD ? separator : separator + 1);
+        return new Node(className, name, desc, newName);
+    }
+
+    enum Kind {
+        CLASS, METHOD, FIELD
+    }
+
+    /** Receives decoded mapping entries in file order. */
+    public interface MappingSink {
+        void addClass(Node node);
+
+        void addMethod(Node node);
+
+        void addField(Node node);
+    }
+
+    public static class Node {
         public String owner;
         public String name;
         public String desc;
         public String newName;
-    }
-}
 
+        public Node() {
+        }
 
+        public Node(String owner, String name, String desc, String newName) {
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+            this.newName = newName;
+        }
+    }
+}
@@ -5,361 +5,1103 @@ import org.objectweb.asm.commons.ClassRemapper;
 import org.objectweb.asm.commons.Remapper;
 
 import com.example.JEBJsonParser.Node;
-import com.example.analyzer.FieldAnalyzer;
-import com.example.analyzer.MemberAnalyzer;
-import com.example.analyzer.StringAnalyzer;
+import com.example.analyzer.ClassAnalyzer;
+import com.example.analyzer.ClassHierarchy;
+import com.example.analyzer.NameAllocator;
+import com.example.cache.TransformCache;
+import com.example.mapping.ExclusionRules;
+import com.example.mapping.HashMappingIndex;
+import com.example.mapping.MappingFootprint;
+import com.example.mapping.MappingIndex;
+import com.example.mapping.MappingSnapshot;
+import com.example.metrics.Phase;
+import com.example.metrics.RunMetrics;
+import com.example.pipeline.StreamingPipeline;
+import com.example.pipeline.StringSpill;
+import com.example.symbol.LongIntHashMap;
+import com.example.symbol.SymbolTable;
+import com.example.transform.FramePreservingTransformer;
+import com.example.transform.ResourceRewriter;
+import com.example.transform.StringRewriter;
+import com.example.zip.CompressedEntry;
+import com.example.zip.DirectoryWriter;
+import com.example.zip.EntrySource;
+import com.example.zip.EntryWriter;
+import com.example.zip.JarStreamWriter;
+import com.example.zip.RawZipWriter;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import java.io.*;
 import java.util.*;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 public class JarRenamer {
+    // Resources are streamed from the jar rather than held: this stands for their bytes
+    // as pipeline input and, as a transform result, asks the writer to stream the rewrite.
+    private static final byte[] STREAMED = new byte[0];
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     private final File jarFile;
-    private final Set<String> excludeClasses;
-    private final List<Node> classNodes;
-    private final List<Node> methodNodes;
-    private final List<Node> fieldNodes;
+    private final ExclusionRules exclusions;
+    private final MappingIndex mappingIndex;
+    private final RenamerOptions options;
 
-    private final Map<String, String> fieldMappingGlobal = new HashMap<>();
-    private final Map<String, String> methodMappingGlobal = new HashMap<>();
+    // Member keys and new names are symbol ids; see SymbolTable.internMember.
+    private final SymbolTable symbols = new SymbolTable();
+    private final LongIntHashMap fieldMappingGlobal = new LongIntHashMap();
+    private final LongIntHashMap methodMappingGlobal = new LongIntHashMap();
+    // The classes whose declarations analysis named, in jar order.
+    private List<ClassAnalyzer> renamedClasses = Collections.emptyList();
     private final Map<String, String> stringMappingGlobal = new HashMap<>();
 
-    private final Map<String, Integer> classNameCounters = new HashMap<>();
-    private final Map<String, Integer> methodNameCounters = new HashMap<>();
-    private final Map<String, Integer> fieldNameCounters = new HashMap<>();
+    private final NameAllocator nameAllocator = new NameAllocator();
+
+    // Internal class name -> new internal name, filled lazily by analysis and the remappers.
+    private final Map<String, String> classNameCache = new ConcurrentHashMap<>();
 
-    private final Map<String, Set<String>> usedNamesInClass = new HashMap<>();
+    private final List<IngestedEntry> ingestedEntries = new ArrayList<>();
+    // Classes of nested jars, kept for analysis only; their bytes are read again when the jar is rewritten.
+    private final List<IngestedEntry> nestedClasses = new ArrayList<>();
 
-    private final Map<String, String> consistentRenamingCache = new HashMap<>();
+    private ClassHierarchy classHierarchy;
+    private MappingSnapshot mappingSnapshot;
+    private TransformCache transformCache;
+    private StringSpill stringSpill;
+    private StringRewriter stringRewriter;
+    private ResourceRewriter resourceRewriter;
+    private final RunMetrics metrics;
 
     public JarRenamer(File jarFile, List<Node> classNames, List<Node> methodNames,
                              List<Node> fieldNames, Set<String> excludeClasses) {
+        this(jarFile, classNames, methodNames, fieldNames, excludeClasses, new RenamerOptions());
+    }
+
+    public JarRenamer(File jarFile, List<Node> classNames, List<Node> methodNames,
+                             List<Node> fieldNames, Set<String> excludeClasses, RenamerOptions options) {
+        this(jarFile, HashMappingIndex.of(classNames, methodNames, fieldNames), excludeClasses, options);
+    }
+
+    public JarRenamer(File jarFile, MappingIndex mappingIndex, Set<String> excludeClasses) {
+        this(jarFile, mappingIndex, excludeClasses, new RenamerOptions());
+    }
+
+    public JarRenamer(File jarFile, MappingIndex mappingIndex, Set<String> excludeClasses, RenamerOptions options) {
         this.jarFile = jarFile;
-        this.excludeClasses = excludeClasses;
-        this.classNodes = classNames;
-        this.methodNodes = methodNames;
-        this.fieldNodes = fieldNames;
+        this.exclusions = excludeClasses == null || excludeClasses.isEmpty()
+                ? options.getExclusionRules()
+                : options.getExclusionRules().withClasses(excludeClasses);
+        this.mappingIndex = mappingIndex;
+        this.options = options;
+        this.metrics = options.getMetrics() != null ? options.getMetrics() : new RunMetrics();
+    }
+
+    public RunMetrics getMetrics() {
+        return metrics;
     }
 
+    /**
+     * Renames the input into {@code <name>-renamed.jar} next to it, or, for an
+     * exploded directory or with {@link RenamerOptions#isExplodedOutput()}, into
+     * a {@code <name>-renamed} directory. With {@link RenamerOptions#isWriteMapping()}
+     * the names given are written to {@code <name>-mapping.txt} as well.
+     */
     public File execute() throws IOException {
+        boolean directoryInput = jarFile.isDirectory();
         String originalName = jarFile.getName();
-        String baseName = originalName.substring(0, originalName.lastIndexOf('.'));
-        File outputFile = new File(jarFile.getParentFile(), baseName + "-renamed.jar");
-        analyzeClasses();
-        analyzeFieldsAndMethods();
-        analyzeStrings();
-        try (JarInputStream jarIn = new JarInputStream(new FileInputStream(jarFile));
-             JarOutputStream jarOut = new JarOutputStream(new FileOutputStream(outputFile))) {
-            Set<String> processedEntries = new HashSet<>();
-            JarEntry entry;
-            while ((entry = jarIn.getNextJarEntry()) != null) {
-                String entryName = entry.getName();
-                if (entryName.endsWith(".class")) {
-                    String className = entryName.substring(0, entryName.length() - 6).replace('/', '.');
-
-                    byte[] classBytes = readAllBytes(jarIn);
-                    byte[] transformedClass = transformClass(classBytes, className);
-
-                    String newEntryName;
-                    if (excludeClasses == null || !excludeClasses.contains(className)) {
-                        String newClassName = getConsistentNameForClass(className);
-                        newEntryName = newClassName != null
-                                ? newClassName.replace('.', '/') + ".class"
-                                : entryName;
-                    } else {
-                        newEntryName = entryName;
+        String baseName = directoryInput ? originalName : originalName.substring(0, originalName.lastIndexOf('.'));
+        File outputFile = new File(jarFile.getParentFile(), baseName
+                + (directoryInput || options.isExplodedOutput() ? "-renamed" : "-renamed.jar"));
+        try (EntrySource input = EntrySource.open(jarFile, options.getWorkerCount())) {
+            RunMetrics.Span ingestSpan = metrics.time(Phase.INGEST);
+            try {
+                ingest(input);
+            } finally {
+                ingestSpan.close();
+            }
+            RunMetrics.Span analyzeSpan = metrics.time(Phase.ANALYZE);
+            try {
+                analyzeFieldsAndMethods();
+                analyzeStrings();
+                snapshotMappings();
+            } finally {
+                analyzeSpan.close();
+            }
+            if (options.isWriteMapping()) {
+                writeMapping(new File(jarFile.getParentFile(), baseName + "-mapping.txt"));
+            }
+            if (options.getCacheDirectory() != null) {
+                transformCache = new TransformCache(options.getCacheDirectory(), options.getCacheMaxBytes());
+            }
+            RunMetrics.Span rewriteSpan = metrics.time(Phase.REWRITE);
+            try (EntryWriter writer = openWriter(input, outputFile)) {
+                if (options.isStreaming()) {
+                    writeEntriesStreaming(input, writer);
+                } else if (options.getWorkerCount() > 1) {
+                    writeEntriesParallel(input, writer);
+                } else {
+                    writeEntries(input, writer);
+                }
+            } finally {
+                rewriteSpan.close();
+            }
+            metrics.printSummary(System.err, "Run summary for " + jarFile.getName() + ":");
+        } finally {
+            ingestedEntries.clear();
+            nestedClasses.clear();
+            renamedClasses = Collections.emptyList();
+            if (stringSpill != null) {
+                stringSpill.close();
+                stringSpill = null;
+            }
+            if (transformCache != null) {
+                System.err.println("Transform cache: " + transformCache.getHits() + " hits, "
+                        + transformCache.getMisses() + " misses.");
+                transformCache.close();
+                transformCache = null;
+            }
+        }
+
+        return outputFile;
+    }
+
+    private EntryWriter openWriter(EntrySource input, File outputFile) throws IOException {
+        if (jarFile.isDirectory() || options.isExplodedOutput()) {
+            return new DirectoryWriter(input, outputFile.toPath());
+        }
+        if (options.isRawCopy()) {
+            return new RawZipWriter(jarFile, outputFile, options.getCompressionLevel(), options.isStoreOnly());
+        }
+        return new JarStreamWriter(input, new FileOutputStream(outputFile),
+                options.getCompressionLevel(), options.isStoreOnly());
+    }
+
+    private void writeEntries(EntrySource input, EntryWriter writer) throws IOException {
+        Set<String> processedEntries = new HashSet<>();
+        for (IngestedEntry ingested : ingestedEntries) {
+            byte[] transformed = ingested.isRewritten() ? transformEntry(input, ingested) : null;
+            long started = metrics.startSection();
+            try {
+                writeEntry(input, writer, ingested, ingested.classBytes, Rewritten.of(transformed), processedEntries);
+            } finally {
+                metrics.endSection(Phase.WRITE, started);
+            }
+        }
+        metrics.flushSections();
+    }
+
+    /**
+     * Rewrites the entries through a {@link StreamingPipeline}: class bytes are
+     * read again from the jar, held only while in flight and dropped once written.
+     * The workers also compress rewritten entries when the writer allows it.
+     */
+    private void writeEntriesStreaming(EntrySource input, EntryWriter writer) throws IOException {
+        Set<String> processedEntries = new HashSet<>();
+        StreamingPipeline pipeline = new StreamingPipeline(options.getWorkerCount(), options.getMaxInFlightBytes());
+        pipeline.run(ingestedEntries.size(),
+                index -> {
+                    IngestedEntry ingested = ingestedEntries.get(index);
+                    if (ingested.resource) {
+                        return STREAMED;
+                    }
+                    return ingested.isRewritten() ? input.read(ingested.entry) : null;
+                },
+                (index, classBytes) -> {
+                    IngestedEntry ingested = ingestedEntries.get(index);
+                    try {
+                        return rewrite(input, ingested, classBytes, writer);
+                    } catch (RuntimeException e) {
+                        throw new IOException("Error transforming " + ingested.entry.getName() + ": " + e.getMessage(), e);
                     }
+                },
+                Rewritten::heldBytes,
+                (index, classBytes, rewritten) -> {
+                    long started = metrics.startSection();
+                    try {
+                        writeEntry(input, writer, ingestedEntries.get(index), classBytes, rewritten, processedEntries);
+                    } finally {
+                        metrics.endSection(Phase.WRITE, started);
+                    }
+                });
+        // The pipeline has shut its workers down, so their last millisecond or so of CPU may be missed.
+        metrics.flushSections();
+    }
 
-                    if (!processedEntries.contains(newEntryName)) {
-                        processedEntries.add(newEntryName);
-                        jarOut.putNextEntry(new JarEntry(newEntryName));
-                        jarOut.write(transformedClass);
+    private void writeEntriesParallel(EntrySource input, EntryWriter writer) throws IOException {
+        int workers = options.getWorkerCount();
+        int window = workers * 4;
+        int count = ingestedEntries.size();
+        List<Future<Rewritten>> pending = new ArrayList<>(Collections.nCopies(count, null));
+        Set<String> processedEntries = new HashSet<>();
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            int submitted = 0;
+            for (int i = 0; i < count; i++) {
+                while (submitted < count && submitted < i + window) {
+                    IngestedEntry ahead = ingestedEntries.get(submitted);
+                    if (ahead.isRewritten()) {
+                        pending.set(submitted, pool.submit(() -> rewrite(input, ahead, readIfNeeded(input, ahead), writer)));
                     }
-                } else {
-                    if (!processedEntries.contains(entryName)) {
-                        processedEntries.add(entryName);
-
-                        jarOut.putNextEntry(new JarEntry(entryName));
-                        byte[] buffer = new byte[8192];
-                        int bytesRead;
-                        while ((bytesRead = jarIn.read(buffer)) != -1) {
-                            jarOut.write(buffer, 0, bytesRead);
+                    submitted++;
+                }
+
+                IngestedEntry ingested = ingestedEntries.get(i);
+                Rewritten rewritten = null;
+                if (ingested.isRewritten()) {
+                    try {
+                        rewritten = pending.set(i, null).get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while transforming " + ingested.entry.getName());
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof IOException) {
+                            throw (IOException) cause;
                         }
+                        throw new IOException("Error transforming " + ingested.entry.getName() + ": " + cause.getMessage(), cause);
                     }
                 }
-                System.err.println("Processed entry: " + entryName);
-                jarOut.closeEntry();
+                long started = metrics.startSection();
+                try {
+                    writeEntry(input, writer, ingested, ingested.classBytes, rewritten, processedEntries);
+                } finally {
+                    metrics.endSection(Phase.WRITE, started);
+                }
             }
+        } finally {
+            metrics.flushSections();
+            pool.shutdownNow();
         }
+    }
 
-        return outputFile;
+    /**
+     * Returns the rewritten class, or {@code null} when its constant pool and
+     * declarations reference nothing that is renamed and the original bytes can be kept.
+     */
+    private byte[] transformEntry(EntrySource input, IngestedEntry ingested) throws IOException {
+        return transformEntry(input, ingested, readIfNeeded(input, ingested));
     }
-    private void analyzeStrings() throws IOException {
-        if ((classNodes == null || classNodes.isEmpty()) && 
-            (methodNodes == null || methodNodes.isEmpty())) {
-            return;
+
+    /** Reads the entry to transform; resources are not read up front, they are streamed as they are rewritten. */
+    private static byte[] readIfNeeded(EntrySource input, IngestedEntry ingested) throws IOException {
+        if (ingested.resource) {
+            return null;
         }
-        
-        try (JarInputStream jarIn = new JarInputStream(new FileInputStream(jarFile))) {
-            JarEntry entry;
-            while ((entry = jarIn.getNextJarEntry()) != null) {
-                String entryName = entry.getName();
-
-                if (entryName.endsWith(".class")) {
-                    String className = entryName.substring(0, entryName.length() - 6).replace('/', '.');
-
-                    if (excludeClasses == null || !excludeClasses.contains(className)) {
-                        byte[] classBytes = readAllBytes(jarIn);
-                        ClassReader reader = new ClassReader(classBytes);
-                        StringAnalyzer analyzer = new StringAnalyzer(className);
-                        reader.accept(analyzer, 0);
-                        
-                        for (String originalString : analyzer.getFoundStrings()) {
-                            if (!stringMappingGlobal.containsKey(originalString)) {
-                                String replacement = findClassOrMethodReplacement(originalString);
-                                if (replacement != null && !replacement.equals(originalString)) {
-                                    stringMappingGlobal.put(originalString, replacement);
-                                }
-                            }
-                        }
-                    }
+        return ingested.classBytes != null ? ingested.classBytes : input.read(ingested.entry);
+    }
+
+    /**
+     * Transforms an entry on a worker thread and, if the writer takes
+     * pre-compressed entries, deflates the result there too so the writer only appends it.
+     */
+    private Rewritten rewrite(EntrySource input, IngestedEntry ingested, byte[] entryBytes,
+                             EntryWriter writer) throws IOException {
+        byte[] transformed = transformEntry(input, ingested, entryBytes);
+        if (transformed == null || transformed == STREAMED || !writer.supportsPrecompressed()) {
+            return Rewritten.of(transformed);
+        }
+        long started = metrics.startSection();
+        try {
+            return new Rewritten(null, writer.precompress(transformed, ingested.entry));
+        } finally {
+            metrics.endSection(Phase.COMPRESS, started);
+        }
+    }
+
+    private byte[] transformEntry(EntrySource input, IngestedEntry ingested, byte[] entryBytes) throws IOException {
+        if (ingested.resource) {
+            return scanResource(input, ingested.entry);
+        }
+        if (ingested.nestedJar) {
+            return rewriteNestedJar(entryBytes);
+        }
+        return transformClassEntry(ingested.className, entryBytes);
+    }
+
+    private byte[] transformClassEntry(String className, byte[] classBytes) throws IOException {
+        long started = metrics.startSection();
+        try {
+            return transformOrReuse(className, classBytes);
+        } finally {
+            metrics.endSection(Phase.TRANSFORM, started);
+        }
+    }
+
+    private byte[] transformOrReuse(String className, byte[] classBytes) throws IOException {
+        MappingFootprint footprint = transformCache != null
+                ? MappingFootprint.hashed(classBytes, new CustomRemapper())
+                : MappingFootprint.counted(classBytes, new CustomRemapper());
+        if (footprint.getRenamedCount() == 0) {
+            metrics.classUnchanged();
+            return null;
+        }
+        metrics.classRewritten();
+        if (transformCache == null) {
+            return transformTimed(classBytes, footprint, className);
+        }
+
+        String variant = options.isPreserveFrames() ? "preserve-frames" : "full";
+        if (options.isRewriteStringReferences()) {
+            variant += "+string-refs";
+        }
+        String key = TransformCache.key(classBytes, footprint.digest(), variant);
+        byte[] cached = transformCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] transformed = transformTimed(classBytes, footprint, className);
+        transformCache.put(key, transformed);
+        return transformed;
+    }
+
+    private byte[] transformTimed(byte[] classBytes, MappingFootprint footprint, String className) {
+        long started = metrics.startSection();
+        try {
+            return transformClass(classBytes, footprint);
+        } finally {
+            metrics.classTransformed(className, classBytes.length, started);
+        }
+    }
+
+    /**
+     * Rewrites a jar stored inside the jar, recursively, without extracting it:
+     * classes are transformed against the same snapshot as the outer jar, and
+     * every entry keeps its stored or deflated method.
+     */
+    private byte[] rewriteNestedJar(byte[] jarBytes) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(jarBytes.length + jarBytes.length / 8);
+        Set<String> processedEntries = new HashSet<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(jarBytes));
+             ZipOutputStream out = new ZipOutputStream(buffer)) {
+            out.setLevel(options.getCompressionLevel());
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                String name = entry.getName();
+                byte[] data = in.readAllBytes();
+                if (name.endsWith(".class")) {
+                    String className = name.substring(0, name.length() - 6).replace('/', '.');
+                    byte[] transformed = transformClassEntry(className, data);
+                    name = renameClassEntry(name);
+                    data = transformed != null ? transformed : data;
+                } else if (isNestedJar(name)) {
+                    data = rewriteNestedJar(data);
+                } else if (isRewrittenResource(name)) {
+                    byte[] rewritten = rewriteResource(name, data);
+                    name = resourceRewriter.renameEntry(name);
+                    data = rewritten != null ? rewritten : data;
+                }
+                if (processedEntries.add(name)) {
+                    writeNestedEntry(out, name, data, entry);
                 }
             }
-            System.err.println("String analysis completed.");
-        } catch (IOException e) {
-            throw new IOException("Error analyzing strings: " + e.getMessage(), e);
         }
+        return buffer.toByteArray();
     }
 
-    private String findClassOrMethodReplacement(String original) {
-        if (classNodes != null && !classNodes.isEmpty()) {
-            for (Node node : classNodes) {
-                if (node.desc.equals(original)) {
-                    return node.newName;
+    private void writeNestedEntry(ZipOutputStream out, String name, byte[] data, ZipEntry source) throws IOException {
+        ZipEntry target = new ZipEntry(name);
+        target.setTime(source.getTime());
+        if (options.isStoreOnly() || source.getMethod() == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            target.setMethod(ZipEntry.STORED);
+            target.setSize(data.length);
+            target.setCompressedSize(data.length);
+            target.setCrc(crc.getValue());
+        }
+        out.putNextEntry(target);
+        out.write(data);
+        out.closeEntry();
+    }
+
+    private boolean isNestedJar(String entryName) {
+        return options.isNestedJars() && entryName.endsWith(".jar");
+    }
+
+    private boolean isRewrittenResource(String entryName) {
+        return resourceRewriter != null && ResourceRewriter.handles(entryName);
+    }
+
+    /**
+     * Returns the rewritten manifest, {@link #STREAMED} for another resource that
+     * names a renamed class, which the writer rewrites as it streams it, or
+     * {@code null} when there is nothing to rewrite.
+     */
+    private byte[] scanResource(EntrySource input, ZipEntry entry) throws IOException {
+        long started = metrics.startSection();
+        try (InputStream in = input.getInputStream(entry)) {
+            if (ResourceRewriter.isManifest(entry.getName())) {
+                return resourceRewriter.rewriteManifest(in);
+            }
+            return resourceRewriter.needsRewrite(entry.getName(), in) ? STREAMED : null;
+        } finally {
+            metrics.endSection(Phase.TRANSFORM, started);
+        }
+    }
+
+    /** Rewrites a resource of a nested jar; {@code null} when it names no renamed class. */
+    private byte[] rewriteResource(String entryName, byte[] data) throws IOException {
+        long started = metrics.startSection();
+        try {
+            return resourceRewriter.rewrite(entryName, data);
+        } finally {
+            metrics.endSection(Phase.TRANSFORM, started);
+        }
+    }
+
+    private String renameClassEntry(String entryName) {
+        String internalName = entryName.substring(0, entryName.length() - 6);
+        String newInternalName = getConsistentNameForClass(internalName);
+        return newInternalName.equals(internalName) ? entryName : newInternalName + ".class";
+    }
+
+    private void writeEntry(EntrySource input, EntryWriter writer, IngestedEntry ingested, byte[] classBytes,
+                            Rewritten rewritten, Set<String> processedEntries) throws IOException {
+        String entryName = ingested.entry.getName();
+        String newEntryName = entryName;
+        if (ingested.className != null) {
+            newEntryName = renameClassEntry(entryName);
+        } else if (ingested.resource) {
+            newEntryName = resourceRewriter.renameEntry(entryName);
+        }
+
+        if (processedEntries.add(newEntryName)) {
+            if (rewritten != null && rewritten.data == STREAMED) {
+                try (InputStream in = input.getInputStream(ingested.entry);
+                     OutputStream out = writer.openEntry(newEntryName, ingested.entry)) {
+                    metrics.bytesOut(resourceRewriter.rewrite(in, out));
                 }
+            } else if (rewritten != null) {
+                rewritten.writeTo(writer, newEntryName, ingested.entry);
+                metrics.bytesOut(rewritten.size());
+            } else if (ingested.className == null || options.isRawCopy() || classBytes == null) {
+                writer.copy(newEntryName, ingested.entry);
+                metrics.bytesOut(ingested.entry.getSize());
+            } else {
+                writer.write(newEntryName, classBytes, ingested.entry);
+                metrics.bytesOut(classBytes.length);
+            }
+        }
+        if (options.isLogEntries()) {
+            System.err.println("Processed entry: " + entryName);
+        }
+    }
+
+    void ingest(ZipFile zipFile) throws IOException {
+        ingest(EntrySource.of(zipFile));
+    }
+
+    void ingest(EntrySource input) throws IOException {
+        if (options.getSpillDirectory() != null) {
+            stringSpill = new StringSpill(options.getSpillDirectory());
+        }
+        Enumeration<? extends ZipEntry> entries = input.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String entryName = entry.getName();
+
+            if (entryName.endsWith(".class")) {
+                byte[] classBytes = input.read(entry);
+                metrics.bytesIn(classBytes.length);
+                ClassReader reader = new ClassReader(classBytes);
+                ClassAnalyzer analyzer = new ClassAnalyzer();
+                reader.accept(analyzer, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+                String className = entryName.substring(0, entryName.length() - 6).replace('/', '.');
+                if (stringSpill != null) {
+                    stringSpill.append(className, analyzer.takeFoundStrings());
+                }
+                ingestedEntries.add(new IngestedEntry(entry, className, retainsClassBytes() ? classBytes : null, analyzer));
+            } else if (isNestedJar(entryName)) {
+                metrics.bytesIn(entry.getSize());
+                try (InputStream in = input.getInputStream(entry)) {
+                    ingestNested(new ZipInputStream(in));
+                }
+                ingestedEntries.add(new IngestedEntry(entry, null, null, null, true, false));
+            } else if (options.isRewriteResources() && ResourceRewriter.handles(entryName)) {
+                ingestedEntries.add(new IngestedEntry(entry, null, null, null, false, true));
+                metrics.bytesIn(entry.getSize());
+            } else {
+                ingestedEntries.add(new IngestedEntry(entry, null, null, null));
+                metrics.bytesIn(entry.getSize());
+            }
+        }
+        System.err.println("Ingestion completed.");
+    }
+
+    /**
+     * Whether ingested class bytes are kept for the rewrite. Streaming reads them
+     * again, and a directory output links unchanged classes instead of writing them.
+     */
+    private boolean retainsClassBytes() {
+        return !options.isStreaming() && !jarFile.isDirectory() && !options.isExplodedOutput();
+    }
+
+    /** Analyzes the classes of a nested jar, and of jars nested in it, straight from the stream. */
+    private void ingestNested(ZipInputStream in) throws IOException {
+        ZipEntry entry;
+        while ((entry = in.getNextEntry()) != null) {
+            String entryName = entry.getName();
+            if (entryName.endsWith(".class")) {
+                ClassReader reader = new ClassReader(in.readAllBytes());
+                ClassAnalyzer analyzer = new ClassAnalyzer();
+                reader.accept(analyzer, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+                String className = entryName.substring(0, entryName.length() - 6).replace('/', '.');
+                if (stringSpill != null) {
+                    stringSpill.append(className, analyzer.takeFoundStrings());
+                }
+                nestedClasses.add(new IngestedEntry(entry, className, null, analyzer));
+            } else if (isNestedJar(entryName)) {
+                ingestNested(new ZipInputStream(in));
             }
         }
-        
-        if (methodNodes != null && !methodNodes.isEmpty()) {
-            for (Node node : methodNodes) {
-                if (node.name.equals(original)) {
-                    return node.newName;
+    }
+
+    /** Every ingested class entry: the jar's own, then those of nested jars. */
+    private List<IngestedEntry> analysedEntries() {
+        if (nestedClasses.isEmpty()) {
+            return ingestedEntries;
+        }
+        List<IngestedEntry> entries = new ArrayList<>(ingestedEntries.size() + nestedClasses.size());
+        entries.addAll(ingestedEntries);
+        entries.addAll(nestedClasses);
+        return entries;
+    }
+
+    void analyzeStrings() throws IOException {
+        if (mappingIndex.classCount() == 0 && mappingIndex.methodCount() == 0) {
+            return;
+        }
+
+        if (options.isRewriteStringReferences()) {
+            stringRewriter = buildStringRewriter();
+        }
+        if (stringSpill != null) {
+            stringSpill.replay(this::analyzeString);
+        } else {
+            for (IngestedEntry ingested : analysedEntries()) {
+                if (ingested.analysis == null) {
+                    continue;
+                }
+                for (String originalString : ingested.analysis.getFoundStrings()) {
+                    analyzeString(ingested.className, originalString);
                 }
             }
         }
-        
-        return null;
+        System.err.println("String analysis completed.");
     }
 
-    private String getConsistentNameForClass(String className) {
-        if (consistentRenamingCache.containsKey(className)) {
-            return consistentRenamingCache.get(className);
+    private void analyzeString(String className, String originalString) {
+        if (exclusions.isExcluded(className)) {
+            return;
+        }
+        if (!stringMappingGlobal.containsKey(originalString)) {
+            String replacement = findClassOrMethodReplacement(originalString);
+            if (replacement == null && stringRewriter != null) {
+                replacement = stringRewriter.rewrite(originalString);
+            }
+            if (replacement != null && !replacement.equals(originalString)) {
+                stringMappingGlobal.put(originalString, replacement);
+            }
         }
+    }
 
-        String newName = getNewName(className, "class");
-        consistentRenamingCache.put(className, newName);
-        return newName;
+    /** Compiles every mapped class that is not excluded or a platform class into one automaton. */
+    private StringRewriter buildStringRewriter() {
+        StringRewriter rewriter = new StringRewriter();
+        forEachRenamedClass(rewriter::addClass);
+        System.err.println("String rewriter compiled " + rewriter.size() + " class name patterns.");
+        return rewriter;
     }
 
-    private String getConsistentNameForMethod(String className, String methodName) {
-        String key = className + "." + methodName;
-        if (consistentRenamingCache.containsKey(key)) {
-            return consistentRenamingCache.get(key);
+    /** Passes the dotted old and new name of every mapped class that is not excluded. */
+    private void forEachRenamedClass(BiConsumer<String, String> action) {
+        mappingIndex.forEachClass((oldName, newName) -> {
+            if (!exclusions.isExcluded(oldName)) {
+                action.accept(oldName, newName);
+            }
+        });
+    }
+
+    /** Freezes the analysed field, method and string names for the rewrite phase. */
+    void snapshotMappings() {
+        mappingSnapshot = new MappingSnapshot(symbols, fieldMappingGlobal, methodMappingGlobal, stringMappingGlobal);
+        if (options.isRewriteResources()) {
+            resourceRewriter = new ResourceRewriter();
+            forEachRenamedClass(resourceRewriter::addClass);
+            System.err.println("Resource rewriter compiled " + resourceRewriter.size() + " class name patterns.");
+        }
+    }
+
+    /**
+     * Replaces a string that is exactly a mapped class name, dotted or internal,
+     * with the full new name in the same form, so {@code Class.forName} still
+     * finds it; or a string that is exactly a mapped method name.
+     */
+    private String findClassOrMethodReplacement(String original) {
+        boolean internal = original.indexOf('/') >= 0 && original.indexOf('.') < 0;
+        String dotted = internal ? original.replace('/', '.') : original;
+        String newClassName = mappingIndex.findClass(dotted);
+        if (newClassName != null) {
+            metrics.mappingLookup(true);
+            if (exclusions.isExcluded(dotted)) {
+                return null;
+            }
+            if (options.isSimpleClassNameStrings()) {
+                return newClassName.substring(newClassName.lastIndexOf('.') + 1);
+            }
+            return internal ? newClassName.replace('.', '/') : newClassName;
         }
 
-        String newName = getNewName(methodName, "method");
-        consistentRenamingCache.put(key, newName);
-        return newName;
+        String newMethodName = mappingIndex.findMethod(null, original, null);
+        metrics.mappingLookup(newMethodName != null);
+        return newMethodName;
     }
 
-    private String getConsistentNameForField(String className, String fieldName) {
-        String key = className + "." + fieldName;
-        if (consistentRenamingCache.containsKey(key)) {
-            return consistentRenamingCache.get(key);
+    /**
+     * Maps an internal class name, keeping excluded classes. Cached by internal
+     * name so a hit in the remapper costs one lookup and no dotted copy.
+     */
+    private String getConsistentNameForClass(String internalName) {
+        String newName = classNameCache.get(internalName);
+        if (newName != null) {
+            return newName;
         }
+        newName = exclusions.isExcluded(internalName)
+                ? internalName
+                : getNewName(null, internalName.replace('/', '.'), null, "class").replace('.', '/');
+        String previous = classNameCache.putIfAbsent(internalName, newName);
+        return previous != null ? previous : newName;
+    }
+
+    // Member names are resolved once each: analysis keeps its answers in the global
+    // maps and the snapshot overlays memoize the ones resolved while rewriting.
+    private String getConsistentNameForMethod(String className, String methodName, String descriptor) {
+        return getNewName(className, methodName, descriptor, "method");
+    }
 
-        String newName = getNewName(fieldName, "field");
-        consistentRenamingCache.put(key, newName);
-        return newName;
+    private String getConsistentNameForField(String className, String fieldName, String descriptor) {
+        return getNewName(className, fieldName, descriptor, "field");
     }
 
     private String getReplacementForString(String originalString) {
-        return stringMappingGlobal.getOrDefault(originalString, originalString);
+        String replacement = mappingSnapshot.mapString(originalString);
+        return replacement != null ? replacement : originalString;
     }
 
-    private void analyzeClasses() throws IOException {
-        try (JarInputStream jarIn = new JarInputStream(new FileInputStream(jarFile))) {
-            JarEntry entry;
-            while ((entry = jarIn.getNextJarEntry()) != null) {
-                String entryName = entry.getName();
+    void analyzeFieldsAndMethods() {
+        List<IngestedEntry> entries = analysedEntries();
+        List<ClassAnalyzer> analyzers = new ArrayList<>();
+        for (IngestedEntry ingested : entries) {
+            if (ingested.analysis != null) {
+                analyzers.add(ingested.analysis);
+            }
+        }
+        classHierarchy = new ClassHierarchy(analyzers);
+
+        // The first entry of a class name wins, as it does in the class hierarchy.
+        List<IngestedEntry> renamed = new ArrayList<>();
+        List<ClassAnalyzer> excluded = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (IngestedEntry ingested : entries) {
+            if (ingested.analysis != null && seen.add(ingested.analysis.getName())) {
+                if (exclusions.isExcluded(ingested.analysis.getName())) {
+                    excluded.add(ingested.analysis);
+                } else {
+                    renamed.add(ingested);
+                }
+            }
+        }
+
+        String[][] newFieldNames = allocateFieldNames(renamed, excluded);
+        renamedClasses = new ArrayList<>(renamed.size());
+        LongIntHashMap familyRequests = requestFamilyNames(renamed, excluded);
+        // Packed family key -> new name id.
+        LongIntHashMap familyNames = new LongIntHashMap();
+
+        for (int i = 0; i < renamed.size(); i++) {
+            ClassAnalyzer analyzer = renamed.get(i).analysis;
+            String internalName = analyzer.getName();
+            renamedClasses.add(analyzer);
+
+            List<ClassAnalyzer.Member> fields = analyzer.getFields();
+            for (int f = 0; f < fields.size(); f++) {
+                String newFieldName = newFieldNames[i][f];
+                if (newFieldName != null) {
+                    ClassAnalyzer.Member field = fields.get(f);
+                    fieldMappingGlobal.put(symbols.internMember(internalName, field.name, field.descriptor),
+                            symbols.intern(newFieldName));
+                }
+            }
+
+            for (ClassAnalyzer.Member method : analyzer.getMethods()) {
+                String methodName = method.name;
+                if (methodName.equals("<init>") || methodName.equals("<clinit>")) {
+                    continue;
+                }
+
+                String familyOwner = classHierarchy.getFamilyOwner(internalName, methodName, method.descriptor);
+                long familyKey = symbols.internMember(familyOwner, methodName, method.descriptor);
+                int newNameId = familyNames.get(familyKey);
+                if (newNameId == 0) {
+                    String requested = symbols.symbol(familyRequests.get(familyKey));
+                    newNameId = symbols.intern(requested.equals(methodName) ? methodName
+                            : nameMethodFamily(familyOwner, methodName, method.descriptor, requested));
+                    familyNames.put(familyKey, newNameId);
+                }
 
-                if (entryName.endsWith(".class")) {
-                    byte[] classBytes = readAllBytes(jarIn);
-                    ClassReader reader = new ClassReader(classBytes);
-                    FieldAnalyzer analyzer = new FieldAnalyzer();
-                    reader.accept(analyzer, 0);
+                if(!methodName.equals(symbols.symbol(newNameId))){
+                    methodMappingGlobal.put(symbols.internMember(internalName, methodName, method.descriptor), newNameId);
                 }
             }
-            System.err.println("Class analysis completed.");
         }
+        System.err.println("Field and method analysis completed.");
     }
 
-    private void analyzeFieldsAndMethods() throws IOException {
-        try (JarInputStream jarIn = new JarInputStream(new FileInputStream(jarFile))) {
-            JarEntry entry;
-            while ((entry = jarIn.getNextJarEntry()) != null) {
-                String entryName = entry.getName();
+    /**
+     * Writes the names analysis settled on, for classes and for the methods and
+     * fields they declare, as a JEB export that {@link com.example.retrace.RetraceIndex}
+     * and later runs can read. Class names keep their package, so only the new
+     * simple name is written, as in a JEB export.
+     */
+    private void writeMapping(File mappingFile) throws IOException {
+        int classes = 0;
+        int members = 0;
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(mappingFile, JsonEncoding.UTF8)) {
+            json.useDefaultPrettyPrinter();
+            json.writeStartObject();
+            json.writeObjectFieldStart(jarFile.getName());
+            json.writeObjectFieldStart("renamed");
 
-                if (entryName.endsWith(".class")) {
-                    String className = entryName.substring(0, entryName.length() - 6).replace('/', '.');
+            json.writeObjectFieldStart("renamed_classes");
+            for (ClassAnalyzer analyzer : renamedClasses) {
+                String newName = getConsistentNameForClass(analyzer.getName());
+                if (!newName.equals(analyzer.getName())) {
+                    json.writeStringField("L" + analyzer.getName() + ";", newName.substring(newName.lastIndexOf('/') + 1));
+                    classes++;
+                }
+            }
+            json.writeEndObject();
 
-                    if (excludeClasses == null || !excludeClasses.contains(className)) {
-                        byte[] classBytes = readAllBytes(jarIn);
-                        ClassReader reader = new ClassReader(classBytes);
-                        MemberAnalyzer analyzer = new MemberAnalyzer(className);
-                        reader.accept(analyzer, 0);
+            json.writeObjectFieldStart("renamed_methods");
+            for (ClassAnalyzer analyzer : renamedClasses) {
+                for (ClassAnalyzer.Member method : analyzer.getMethods()) {
+                    String newName = declaredName(methodMappingGlobal, analyzer.getName(), method);
+                    if (newName != null) {
+                        json.writeStringField("L" + analyzer.getName() + ";->" + method.name + method.descriptor, newName);
+                        members++;
+                    }
+                }
+            }
+            json.writeEndObject();
 
-                        for (String fieldName : analyzer.getFieldNames()) {
-                            String key = className.replace('.', '/') + "." + fieldName;
-                            String newFieldName = getConsistentNameForField(className, fieldName);
+            json.writeObjectFieldStart("renamed_fields");
+            for (ClassAnalyzer analyzer : renamedClasses) {
+                for (ClassAnalyzer.Member field : analyzer.getFields()) {
+                    String newName = declaredName(fieldMappingGlobal, analyzer.getName(), field);
+                    if (newName != null) {
+                        json.writeStringField("L" + analyzer.getName() + ";->" + field.name + ":" + field.descriptor, newName);
+                        members++;
+                    }
+                }
+            }
+            json.writeEndObject();
+
+            json.writeEndObject();
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        System.err.println("Wrote " + classes + " class and " + members + " member names to " + mappingFile + ".");
+    }
 
-                            if(fieldName.equals(newFieldName)){
-                                continue;
-                            }
+    private String declaredName(LongIntHashMap mapping, String owner, ClassAnalyzer.Member member) {
+        long key = symbols.findMember(owner, member.name, member.descriptor);
+        int newName = key == SymbolTable.ABSENT ? 0 : mapping.get(key);
+        return newName == 0 ? null : symbols.symbol(newName);
+    }
 
-                            Set<String> usedNames = usedNamesInClass.get(className);
-                            if (usedNames == null) {
-                                usedNames = new HashSet<>();
-                                usedNamesInClass.put(className, usedNames);
-                            }
+    /**
+     * Names the fields of each class, in parallel when there are several workers.
+     * A field reference resolves to the nearest declaration up the hierarchy, so a
+     * new name must not be used by a supertype, where it would hide the inherited
+     * field, nor kept by a subclass, which would hide the renamed one. Fields that
+     * keep their name are reserved first, then classes are named supertypes first;
+     * the result is the same however they are scheduled. Unrenamed fields are {@code null}.
+     */
+    private String[][] allocateFieldNames(List<IngestedEntry> classes, List<ClassAnalyzer> excluded) {
+        for (ClassAnalyzer analyzer : excluded) {
+            for (ClassAnalyzer.Member field : analyzer.getFields()) {
+                reserveFieldName(analyzer.getName(), field.name);
+            }
+        }
+        String[][] requested = new String[classes.size()][];
+        IntConsumer request = i -> {
+            IngestedEntry ingested = classes.get(i);
+            List<ClassAnalyzer.Member> fields = ingested.analysis.getFields();
+            String[] names = new String[fields.size()];
+            for (int f = 0; f < names.length; f++) {
+                ClassAnalyzer.Member field = fields.get(f);
+                String newFieldName = getConsistentNameForField(ingested.className, field.name, field.descriptor);
+                if (field.name.equals(newFieldName)) {
+                    reserveFieldName(ingested.analysis.getName(), field.name);
+                } else {
+                    names[f] = newFieldName;
+                }
+            }
+            requested[i] = names;
+        };
 
-                            while (usedNames.contains(newFieldName)) {
-                                newFieldName = newFieldName + "_" + generateDeterministicSuffix(fieldName, fieldNameCounters);
-                            }
+        String[][] newNames = new String[classes.size()][];
+        IntConsumer allocate = i -> {
+            String internalName = classes.get(i).analysis.getName();
+            List<String> supertypes = classHierarchy.getSupertypes(internalName);
+            String[] names = new String[requested[i].length];
+            for (int f = 0; f < names.length; f++) {
+                if (requested[i][f] != null) {
+                    names[f] = nameAllocator.allocate(internalName, supertypes, NameAllocator.Kind.FIELD,
+                            requested[i][f]);
+                }
+            }
+            newNames[i] = names;
+        };
 
-                            usedNames.add(newFieldName);
-                            fieldMappingGlobal.put(key, newFieldName);
-                        }
+        // A supertype has fewer supertypes than its subclasses, so classes with as
+        // many supertypes can be named together once the previous depth is done.
+        Map<Integer, List<Integer>> depths = new TreeMap<>();
+        for (int i = 0; i < classes.size(); i++) {
+            int depth = classHierarchy.getSupertypes(classes.get(i).analysis.getName()).size();
+            depths.computeIfAbsent(depth, key -> new ArrayList<>()).add(i);
+        }
 
-                        for (String methodName : analyzer.getMethodNames()) {
-                            if (methodName.equals("<init>") || methodName.equals("<clinit>")) {
-                                continue;
-                            }
+        int workers = options.getWorkerCount();
+        ForkJoinPool pool = workers > 1 ? new ForkJoinPool(workers) : null;
+        try {
+            forEach(pool, IntStream.range(0, classes.size()), request);
+            for (List<Integer> depth : depths.values()) {
+                forEach(pool, depth.stream().mapToInt(Integer::intValue), allocate);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        return newNames;
+    }
 
-                            String key = className.replace('.', '/') + "." + methodName;
-                            String newMethodName = getConsistentNameForMethod(className, methodName);
+    /** Reserves the name of a field that keeps it, in its class and in all of the class's supertypes. */
+    private void reserveFieldName(String owner, String name) {
+        nameAllocator.reserve(owner, NameAllocator.Kind.FIELD, name);
+        for (String supertype : classHierarchy.getSupertypes(owner)) {
+            nameAllocator.reserve(supertype, NameAllocator.Kind.FIELD, name);
+        }
+    }
 
-                            if(methodName.equals(newMethodName)){
-                                continue;
-                            }
+    private static void forEach(ForkJoinPool pool, IntStream indexes, IntConsumer action) {
+        if (pool == null) {
+            indexes.forEach(action);
+        } else {
+            pool.submit(() -> indexes.parallel().forEach(action)).join();
+        }
+    }
 
-                            Set<String> usedNames = usedNamesInClass.get(className);
-                            if (usedNames == null) {
-                                usedNames = new HashSet<>();
-                                usedNamesInClass.put(className, usedNames);
-                            }
+    /**
+     * Looks up the name each override family asks for, keyed by its packed family
+     * key, and reserves the signature of every method that keeps its name, so
+     * that no renamed family can take it over.
+     */
+    private LongIntHashMap requestFamilyNames(List<IngestedEntry> renamed, List<ClassAnalyzer> excluded) {
+        for (ClassAnalyzer analyzer : excluded) {
+            for (ClassAnalyzer.Member method : analyzer.getMethods()) {
+                nameAllocator.reserveSignature(analyzer.getName(), method.name, method.descriptor);
+            }
+        }
+        LongIntHashMap requests = new LongIntHashMap();
+        for (IngestedEntry ingested : renamed) {
+            String internalName = ingested.analysis.getName();
+            for (ClassAnalyzer.Member method : ingested.analysis.getMethods()) {
+                String methodName = method.name;
+                if (methodName.equals("<init>") || methodName.equals("<clinit>")) {
+                    continue;
+                }
+                String familyOwner = classHierarchy.getFamilyOwner(internalName, methodName, method.descriptor);
+                long familyKey = symbols.internMember(familyOwner, methodName, method.descriptor);
+                int requested = requests.get(familyKey);
+                if (requested == 0) {
+                    requested = symbols.intern(requestFamilyName(familyOwner, methodName, method.descriptor));
+                    requests.put(familyKey, requested);
+                }
+                if (methodName.equals(symbols.symbol(requested))) {
+                    nameAllocator.reserveSignature(internalName, methodName, method.descriptor);
+                }
+            }
+        }
+        return requests;
+    }
 
-                            while (usedNames.contains(newMethodName)) {
-                                newMethodName = newMethodName + "_" + generateDeterministicSuffix(methodName, methodNameCounters);
-                            }
+    /**
+     * The name the mapping gives an override family: that of the family's
+     * representative. A family with a member in an excluded class keeps its
+     * original name.
+     */
+    private String requestFamilyName(String familyOwner, String methodName, String descriptor) {
+        List<String> members = classHierarchy.getFamilyMembers(familyOwner, methodName, descriptor);
+        for (String member : members) {
+            if (exclusions.isExcluded(member)) {
+                return methodName;
+            }
+        }
 
-                            usedNames.add(newMethodName);
-                            methodMappingGlobal.put(key, newMethodName);
-                        }
-                    }
+        String representative = familyOwner;
+        if (!hasOwnMapping(familyOwner, methodName, descriptor)) {
+            for (String member : members) {
+                if (hasOwnMapping(member, methodName, descriptor)) {
+                    representative = member;
+                    break;
                 }
             }
-            System.err.println("Field and method analysis completed.");
-        } catch (IOException e) {
-            throw new IOException("Error analyzing fields and methods: " + e.getMessage(), e);
         }
+        return getConsistentNameForMethod(representative.replace('/', '.'), methodName, descriptor);
+    }
+
+    /**
+     * Picks one name for every declaration in an override family: the requested
+     * name, suffixed until it is free in each declaring class and no supertype or
+     * subtype of one declares a method with the new name and the same descriptor,
+     * which the family would otherwise override or be overridden by.
+     */
+    private String nameMethodFamily(String familyOwner, String methodName, String descriptor, String requested) {
+        List<String> members = classHierarchy.getFamilyMembers(familyOwner, methodName, descriptor);
+        Set<String> related = new LinkedHashSet<>();
+        for (String member : members) {
+            related.addAll(classHierarchy.getSupertypes(member));
+            related.addAll(classHierarchy.getSubtypes(member));
+        }
+        return nameAllocator.allocateMethod(members, related, requested, descriptor);
+    }
+
+    /** Whether the mapping names this exact declaration rather than only its simple name. */
+    private boolean hasOwnMapping(String owner, String methodName, String descriptor) {
+        String own = mappingIndex.findMethod(owner.replace('/', '.'), methodName, descriptor);
+        return own != null && !own.equals(mappingIndex.findMethod(null, methodName, null));
+    }
+
+    /**
+     * Rewrites a single class against the analysed mapping, or returns it as is
+     * when nothing in it is renamed. The phase methods are package-private for the benchmarks.
+     */
+    byte[] transformClass(byte[] classBytes) {
+        MappingFootprint footprint = MappingFootprint.counted(classBytes, new CustomRemapper());
+        return footprint.getRenamedCount() == 0 ? classBytes : transformClass(classBytes, footprint);
     }
 
-    private byte[] transformClass(byte[] classBytes, String className) {
+    private byte[] transformClass(byte[] classBytes, MappingFootprint footprint) {
+        if (options.isPreserveFrames()) {
+            return FramePreservingTransformer.transform(classBytes, new CustomRemapper(), footprint.getRenamedItems());
+        }
         ClassReader reader = new ClassReader(classBytes);
         ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
 
-        ClassRemapper remapper = new ClassRemapper(writer, new CustomRemapper(className));
+        ClassRemapper remapper = new ClassRemapper(writer, new CustomRemapper());
         reader.accept(remapper, ClassReader.EXPAND_FRAMES);
 
         return writer.toByteArray();
     }
 
-    private String getNewName(String originalName, String type) {
-        if (originalName.startsWith("java.") || originalName.startsWith("javax.") || originalName.startsWith("android.")) {
-            return originalName;
-        }
+    private String getNewName(String owner, String originalName, String descriptor, String type) {
+        String newName = null;
         switch (type) {
             case "class":
-                if (classNodes != null && !classNodes.isEmpty()) {
-                    for(Node node: classNodes){
-                        if(node.desc.equals(originalName)){
-                            return node.owner + "." + node.newName;
-                        }
-                    }
-                }
+                newName = mappingIndex.findClass(originalName);
                 break;
             case "method":
-                if (methodNodes != null && !methodNodes.isEmpty()) {
-                    for(Node node: methodNodes){
-                        if(node.name.equals(originalName)){
-                            return node.newName;
-                        }
-                    }
-                }
+                newName = mappingIndex.findMethod(owner, originalName, descriptor);
                 break;
             case "field":
-                if (fieldNodes != null && !fieldNodes.isEmpty()) {           
-                    for(Node node: fieldNodes){
-                        if(node.name.equals(originalName)){
-                            return node.newName;
-                        }
-                    }
-                }
+                newName = mappingIndex.findField(owner, originalName, descriptor);
                 break;
         }
-        return originalName;
+        metrics.mappingLookup(newName != null);
+        return newName != null ? newName : originalName;
     }
 
-    private byte[] readAllBytes(InputStream is) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int bytesRead;
-        byte[] data = new byte[4096];
+    private static final class IngestedEntry {
+        final ZipEntry entry;
+        final String className;
+        final byte[] classBytes;
+        final ClassAnalyzer analysis;
+        final boolean nestedJar;
+        final boolean resource;
 
-        while ((bytesRead = is.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, bytesRead);
+        IngestedEntry(ZipEntry entry, String className, byte[] classBytes, ClassAnalyzer analysis) {
+            this(entry, className, classBytes, analysis, false, false);
         }
 
-        return buffer.toByteArray();
-    }
+        IngestedEntry(ZipEntry entry, String className, byte[] classBytes, ClassAnalyzer analysis,
+                      boolean nestedJar, boolean resource) {
+            this.entry = entry;
+            this.className = className;
+            this.classBytes = classBytes;
+            this.analysis = analysis;
+            this.nestedJar = nestedJar;
+            this.resource = resource;
+        }
 
-    private String generateDeterministicSuffix(String originalName, Map<String, Integer> counters) {
-        Integer counter = counters.getOrDefault(originalName, 0);
-        counters.put(originalName, counter + 1);
-        return String.valueOf(counter);
+        /** Whether the entry goes through a transform: a class, a nested jar holding classes, or a text resource. */
+        boolean isRewritten() {
+            return className != null || nestedJar || resource;
+        }
     }
 
-    private class CustomRemapper extends Remapper {
-        private final Map<String, String> fieldMappings = new HashMap<>();
-        private final Map<String, String> methodMappings = new HashMap<>();
+    /** A rewritten entry, either as plain bytes or already compressed by a worker. */
+    private static final class Rewritten {
+        final byte[] data;
+        final CompressedEntry compressed;
 
-        public CustomRemapper(String currentClassName) {
-            fieldMappings.putAll(fieldMappingGlobal);
-            methodMappings.putAll(methodMappingGlobal);
+        Rewritten(byte[] data, CompressedEntry compressed) {
+            this.data = data;
+            this.compressed = compressed;
         }
 
-        @Override
-        public String map(String internalName) {
-            String className = internalName.replace('/', '.');
-            String newClassName;
-            if (excludeClasses == null || !excludeClasses.contains(className)) {
-                newClassName = getConsistentNameForClass(className);
+        static Rewritten of(byte[] data) {
+            return data != null ? new Rewritten(data, null) : null;
+        }
+
+        long size() {
+            return compressed != null ? compressed.getSize() : data.length;
+        }
+
+        /** Heap held until written: the compressed payload, or the plain bytes. */
+        long heldBytes() {
+            return compressed != null ? compressed.getPayload().length : data.length;
+        }
+
+        void writeTo(EntryWriter writer, String name, ZipEntry source) throws IOException {
+            if (compressed != null) {
+                writer.write(name, compressed, source);
             } else {
-                newClassName = className;
+                writer.write(name, data, source);
             }
-            return newClassName != null ? newClassName.replace('.', '/') : internalName;
+        }
+    }
+
+    private class CustomRemapper extends Remapper {
+
+        @Override
+        public String map(String internalName) {
+            return getConsistentNameForClass(internalName);
         }
 
         @Override
@@ -368,34 +1110,30 @@ public class JarRenamer {
                 return name;
             }
 
-            String key = owner + "." + name;
-            if (methodMappings.containsKey(key)) {
-                return methodMappings.get(key);
-            }
-
-            String ownerClassName = owner.replace('/', '.');
-            if (excludeClasses == null || !excludeClasses.contains(ownerClassName)) {
-                String newName = getConsistentNameForMethod(ownerClassName, name);
-                methodMappings.put(key, newName);
-                return newName;
+            String declaringClass = classHierarchy.resolveMethod(owner, name, descriptor);
+            if (declaringClass != null) {
+                return mappingSnapshot.mapMethod(declaringClass, name, descriptor, null);
             }
-            return name;
+            return mappingSnapshot.mapMethod(owner, name, descriptor, (methodOwner, methodName, methodDescriptor) -> {
+                if (!exclusions.isExcluded(methodOwner)) {
+                    return getConsistentNameForMethod(methodOwner.replace('/', '.'), methodName, methodDescriptor);
+                }
+                return null;
+            });
         }
 
         @Override
         public String mapFieldName(String owner, String name, String descriptor) {
-            String key = owner + "." + name;
-            if (fieldMappings.containsKey(key)) {
-                return fieldMappings.get(key);
+            String declaringClass = classHierarchy.resolveField(owner, name, descriptor);
+            if (declaringClass != null) {
+                return mappingSnapshot.mapField(declaringClass, name, descriptor, null);
             }
-
-            String ownerClassName = owner.replace('/', '.');
-            if (excludeClasses == null || !excludeClasses.contains(ownerClassName)) {
-                String newName = getConsistentNameForField(ownerClassName, name);
-                fieldMappings.put(key, newName);
-                return newName;
-            }
-            return name;
+            return mappingSnapshot.mapField(owner, name, descriptor, (fieldOwner, fieldName, fieldDescriptor) -> {
+                if (!exclusions.isExcluded(fieldOwner)) {
+                    return getConsistentNameForField(fieldOwner.replace('/', '.'), fieldName, fieldDescriptor);
+                }
+                return null;
+            });
         }
 
         @Override
@@ -410,4 +1148,3 @@ public class JarRenamer {
     }
 
 }
-    
\ No newline at end of file
@@ -0,0 +1,273 @@
+package com.example;
+
+import java.io.File;
+import java.util.zip.Deflater;
+
+import com.example.mapping.ExclusionRules;
+import com.example.metrics.RunMetrics;
+
+/**
+ * Tuning knobs for a {@link JarRenamer} run. The defaults reproduce the
+ * original single-threaded behaviour.
+ */
+public class RenamerOptions {
+    private int workerCount = 1;
+    private boolean rawCopy;
+    private File cacheDirectory;
+    private long cacheMaxBytes = 1024L * 1024 * 1024;
+    private boolean preserveFrames;
+    private boolean logEntries;
+    private boolean rewriteStringReferences;
+    private boolean simpleClassNameStrings;
+    private boolean writeMapping;
+    private boolean streaming;
+    private boolean nestedJars;
+    private boolean rewriteResources;
+    private boolean explodedOutput;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private boolean storeOnly;
+    private long maxInFlightBytes = 64L * 1024 * 1024;
+    private File spillDirectory;
+    private ExclusionRules exclusionRules = ExclusionRules.platform();
+    private RunMetrics metrics;
+
+    public RenamerOptions() {
+    }
+
+    /** Copies every setting of {@code other}, including its metrics. */
+    public RenamerOptions(RenamerOptions other) {
+        this.workerCount = other.workerCount;
+        this.rawCopy = other.rawCopy;
+        this.cacheDirectory = other.cacheDirectory;
+        this.cacheMaxBytes = other.cacheMaxBytes;
+        this.preserveFrames = other.preserveFrames;
+        this.logEntries = other.logEntries;
+        this.rewriteStringReferences = other.rewriteStringReferences;
+        this.simpleClassNameStrings = other.simpleClassNameStrings;
+        this.writeMapping = other.writeMapping;
+        this.streaming = other.streaming;
+        this.nestedJars = other.nestedJars;
+        this.rewriteResources = other.rewriteResources;
+        this.explodedOutput = other.explodedOutput;
+        this.compressionLevel = other.compressionLevel;
+        this.storeOnly = other.storeOnly;
+        this.maxInFlightBytes = other.maxInFlightBytes;
+        this.spillDirectory = other.spillDirectory;
+        this.exclusionRules = other.exclusionRules;
+        this.metrics = other.metrics;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /** Number of class transform workers; {@code 0} or less uses every available core. */
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+    }
+
+    public boolean isRawCopy() {
+        return rawCopy;
+    }
+
+    /**
+     * Copies untouched entries as their original compressed bytes, keeping
+     * compression method, CRC, sizes and timestamps, instead of re-deflating them.
+     */
+    public void setRawCopy(boolean rawCopy) {
+        this.rawCopy = rawCopy;
+    }
+
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /** Directory of the persistent transform cache; {@code null} disables caching. */
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    /** Size the cache directory is trimmed back to, least recently used first, after each run. */
+    public void setCacheMaxBytes(long cacheMaxBytes) {
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+
+    public boolean isPreserveFrames() {
+        return preserveFrames;
+    }
+
+    /**
+     * Rewrites classes with a copied constant pool and their original stack map
+     * frames and max stack/locals, copying method bodies that reference nothing renamed.
+     */
+    public void setPreserveFrames(boolean preserveFrames) {
+        this.preserveFrames = preserveFrames;
+    }
+
+    public boolean isLogEntries() {
+        return logEntries;
+    }
+
+    /** Prints a line to {@code System.err} for every jar entry written. */
+    public void setLogEntries(boolean logEntries) {
+        this.logEntries = logEntries;
+    }
+
+    public boolean isRewriteStringReferences() {
+        return rewriteStringReferences;
+    }
+
+    /**
+     * Also renames mapped class names found inside string constants, such as
+     * {@code "com.foo.Bar"} in a reflection call or {@code "com/foo/Bar.class"},
+     * not only strings that are exactly a mapped name.
+     */
+    public void setRewriteStringReferences(boolean rewriteStringReferences) {
+        this.rewriteStringReferences = rewriteStringReferences;
+    }
+
+    public boolean isSimpleClassNameStrings() {
+        return simpleClassNameStrings;
+    }
+
+    /**
+     * Replaces a string that is exactly a mapped class name with the new simple
+     * name, as earlier versions did, instead of the full new name in the
+     * string's own form. Only useful for strings that hold a display name.
+     */
+    public void setSimpleClassNameStrings(boolean simpleClassNameStrings) {
+        this.simpleClassNameStrings = simpleClassNameStrings;
+    }
+
+    public boolean isWriteMapping() {
+        return writeMapping;
+    }
+
+    /**
+     * Also writes the names the run gave to the jar's classes, methods and
+     * fields, as a JEB export in {@code <name>-mapping.txt} next to the output.
+     * Unlike the input mapping it holds the names of whole override families
+     * and the suffixes added to avoid collisions, so it is what to retrace with.
+     */
+    public void setWriteMapping(boolean writeMapping) {
+        this.writeMapping = writeMapping;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Keeps no class bytes between ingestion and rewriting: the rewrite pass
+     * reads, transforms and writes entries through bounded queues instead.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public boolean isNestedJars() {
+        return nestedJars;
+    }
+
+    /**
+     * Renames the classes of {@code .jar} entries too, such as Spring Boot's
+     * {@code BOOT-INF/lib} or shaded libraries, as part of the same mapping space.
+     * Nested jars are rewritten in memory and keep their stored or deflated method.
+     */
+    public void setNestedJars(boolean nestedJars) {
+        this.nestedJars = nestedJars;
+    }
+
+    public boolean isRewriteResources() {
+        return rewriteResources;
+    }
+
+    /**
+     * Renames class names in {@code META-INF/services} files, the manifest, XML and
+     * {@code .properties} resources. They are rewritten on the transform workers.
+     */
+    public void setRewriteResources(boolean rewriteResources) {
+        this.rewriteResources = rewriteResources;
+    }
+
+    public ExclusionRules getExclusionRules() {
+        return exclusionRules;
+    }
+
+    /**
+     * Classes that keep their names, and whose members keep theirs. Defaults to
+     * {@link ExclusionRules#PLATFORM}; custom rules should include those too.
+     */
+    public void setExclusionRules(ExclusionRules exclusionRules) {
+        this.exclusionRules = exclusionRules;
+    }
+
+    public boolean isExplodedOutput() {
+        return explodedOutput;
+    }
+
+    /**
+     * Writes a jar's output as a directory of files instead of a jar; unchanged
+     * files are hard linked. A {@link JarRenamer} given a directory always writes
+     * a directory. On the command line a directory is instead taken as a folder
+     * of jars to rename in a batch, unless {@code --exploded} is given.
+     */
+    public void setExplodedOutput(boolean explodedOutput) {
+        this.explodedOutput = explodedOutput;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /** Deflate level of rewritten output, {@code 0} to {@code 9}, or {@link Deflater#DEFAULT_COMPRESSION}. */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel != Deflater.DEFAULT_COMPRESSION && (compressionLevel < 0 || compressionLevel > 9)) {
+            throw new IllegalArgumentException("Compression level must be 0-9: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    public boolean isStoreOnly() {
+        return storeOnly;
+    }
+
+    /**
+     * Writes entries stored instead of deflated, for scratch builds where speed
+     * matters more than size. With raw copy, untouched entries are still copied as they are.
+     */
+    public void setStoreOnly(boolean storeOnly) {
+        this.storeOnly = storeOnly;
+    }
+
+    public long getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+    /** Input and rewritten bytes the streaming pipeline may hold between reading and writing. */
+    public void setMaxInFlightBytes(long maxInFlightBytes) {
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /** Directory for analysis data kept on disk instead of the heap; {@code null} keeps it in memory. */
+    public void setSpillDirectory(File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public RunMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Metrics to record the run into, e.g. to include the mapping parse; {@code null} makes the renamer create its own. */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+}
@@ -1,24 +1,224 @@
 package com.example;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.example.mapping.BinaryMappingIndex;
+import com.example.mapping.ClassBloomFilter;
+import com.example.mapping.ExclusionRules;
+import com.example.mapping.HashMappingIndex;
+import com.example.mapping.MappingIndex;
+import com.example.metrics.Phase;
+import com.example.metrics.RunMetrics;
+import com.example.retrace.RetraceIndex;
+import com.example.retrace.Retracer;
 
 public class Start {
     public static void main(String[] args) {
         try {
-            JEBJsonParser parser = new JEBJsonParser(new File("C:\\JEB\\bin\\codedata.txt")); 
-            
-            File jarFile = new File("C:\\target.jar");
+            RenamerOptions options = new RenamerOptions();
+            List<String> paths = new ArrayList<>();
+            int parallelJars = 0;
+            File compiledMapping = null;
+            boolean pruneMapping = false;
+            List<String> exclusionRules = new ArrayList<>(ExclusionRules.PLATFORM);
+            boolean retrace = false;
+            boolean reverse = false;
+            boolean workersGiven = false;
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--workers":
+                        options.setWorkerCount(Integer.parseInt(args[++i]));
+                        workersGiven = true;
+                        break;
+                    case "--retrace":
+                        retrace = true;
+                        break;
+                    case "--reverse":
+                        reverse = true;
+                        break;
+                    case "--raw-copy":
+                        options.setRawCopy(true);
+                        break;
+                    case "--cache-dir":
+                        options.setCacheDirectory(new File(args[++i]));
+                        break;
+                    case "--cache-max-mb":
+                        options.setCacheMaxBytes(Long.parseLong(args[++i]) * 1024 * 1024);
+                        break;
+                    case "--compile":
+                        compiledMapping = new File(args[++i]);
+                        break;
+                    case "--prune-mapping":
+                        pruneMapping = true;
+                        break;
+                    case "--jobs":
+                        parallelJars = Integer.parseInt(args[++i]);
+                        break;
+                    case "--log-entries":
+                        options.setLogEntries(true);
+                        break;
+                    case "--preserve-frames":
+                        options.setPreserveFrames(true);
+                        break;
+                    case "--rewrite-string-refs":
+                        options.setRewriteStringReferences(true);
+                        break;
+                    case "--simple-class-strings":
+                        options.setSimpleClassNameStrings(true);
+                        break;
+                    case "--write-mapping":
+                        options.setWriteMapping(true);
+                        break;
+                    case "--nested-jars":
+                        options.setNestedJars(true);
+                        break;
+                    case "--exclude":
+                        exclusionRules.add(args[++i]);
+                        break;
+                    case "--exclude-file":
+                        exclusionRules.addAll(ExclusionRules.readRules(new File(args[++i])));
+                        break;
+                    case "--exploded":
+                        options.setExplodedOutput(true);
+                        break;
+                    case "--rewrite-resources":
+                        options.setRewriteResources(true);
+                        break;
+                    case "--level":
+                        options.setCompressionLevel(Integer.parseInt(args[++i]));
+                        break;
+                    case "--store":
+                        options.setStoreOnly(true);
+                        break;
+                    case "--streaming":
+                        options.setStreaming(true);
+                        break;
+                    case "--max-in-flight-mb":
+                        options.setMaxInFlightBytes(Long.parseLong(args[++i]) * 1024 * 1024);
+                        break;
+                    case "--spill-dir":
+                        options.setSpillDirectory(new File(args[++i]));
+                        break;
+                    default:
+                        paths.add(args[i]);
+                }
+            }
+            options.setExclusionRules(ExclusionRules.compile(exclusionRules));
+
+            File mappingFile = new File(paths.size() > 0 ? paths.get(0) : "C:\\JEB\\bin\\codedata.txt");
+            if (compiledMapping != null) {
+                BinaryMappingIndex.compile(mappingFile, compiledMapping);
+                System.out.println("Compiled mapping: " + compiledMapping.getAbsolutePath());
+                return;
+            }
+            if (retrace) {
+                // <mapping> <log> [output]: translate names in a log instead of renaming a jar. The
+                // mapping should be the one a run wrote with --write-mapping, which has every name given.
+                if (paths.size() < 2) {
+                    System.err.println("Usage: --retrace [--reverse] <mapping> <log> [output]");
+                    System.exit(1);
+                }
+                retrace(mappingFile, new File(paths.get(1)), paths.size() > 2 ? new File(paths.get(2)) : null,
+                        reverse ? RetraceIndex.Direction.NEW_TO_OLD : RetraceIndex.Direction.OLD_TO_NEW,
+                        workersGiven ? options.getWorkerCount() : Runtime.getRuntime().availableProcessors());
+                return;
+            }
+
+            File jarFile = new File(paths.size() > 1 ? paths.get(1) : "C:\\target.jar");
+            // With --exploded a directory is a tree of classes to rename, not a directory of jars.
+            boolean exploded = options.isExplodedOutput();
+            boolean batchMode = paths.size() > 2 || jarFile.isDirectory() && !exploded;
+            List<File> jars = Collections.singletonList(jarFile);
+            if (batchMode) {
+                List<File> inputs = new ArrayList<>();
+                for (String path : paths.subList(1, paths.size())) {
+                    inputs.add(new File(path));
+                }
+                jars = exploded ? inputs : BatchRenamer.collectJars(inputs);
+            }
+
+            RunMetrics metrics = new RunMetrics();
+            options.setMetrics(metrics);
+            MappingIndex mappingIndex;
+            RunMetrics.Span parseSpan = metrics.time(Phase.PARSE);
+            try {
+                if (BinaryMappingIndex.isCompiled(mappingFile)) {
+                    if (pruneMapping) {
+                        System.err.println("Ignoring --prune-mapping: compiled mappings are not parsed.");
+                    }
+                    mappingIndex = BinaryMappingIndex.open(mappingFile);
+                } else if (pruneMapping) {
+                    // Only members of classes in the jars being renamed are kept.
+                    ClassBloomFilter owners = ClassBloomFilter.scan(jars, options.isNestedJars());
+                    System.err.println("Pruning mapping to the " + owners.size() + " classes in the input.");
+                    mappingIndex = HashMappingIndex.load(mappingFile, owners);
+                } else {
+                    mappingIndex = HashMappingIndex.load(mappingFile);
+                }
+            } finally {
+                parseSpan.close();
+            }
+
+            if (batchMode) {
+                // Several jars or a directory of jars: parse once, rename them all.
+                System.err.println("Mapping loaded in " + metrics.getWallNanos(Phase.PARSE) / 1_000_000 + " ms.");
+                BatchRenamer batch = new BatchRenamer(mappingIndex, null, options, parallelJars);
+                boolean failed = false;
+                for (BatchRenamer.Result result : batch.execute(jars)) {
+                    if (result.getError() != null) {
+                        failed = true;
+                        System.err.println("Failed to rename " + result.getJarFile() + ": " + result.getError());
+                    } else {
+                        System.out.println("Output file: " + result.getOutputFile().getAbsolutePath());
+                    }
+                }
+                if (failed) {
+                    System.exit(1);
+                }
+                return;
+            }
             JarRenamer renamer = new JarRenamer(
                 jarFile,
-                parser.classNodes,
-                parser.methodNodes,
-                parser.fieldNodes,
-                null);
+                mappingIndex,
+                null,
+                options);
             File outputFile = renamer.execute();
             System.out.println("Output file: " + outputFile.getAbsolutePath());
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    private static void retrace(File mappingFile, File input, File output, RetraceIndex.Direction direction,
+                                int workers) throws IOException {
+        if (BinaryMappingIndex.isCompiled(mappingFile)) {
+            throw new IOException("Retrace needs a JEB mapping, not a compiled one: " + mappingFile);
+        }
+        long start = System.nanoTime();
+        RetraceIndex index = RetraceIndex.load(mappingFile);
+        System.err.println("Retrace index: " + index.classCount() + " classes, " + index.methodCount()
+                + " methods, loaded in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+
+        Retracer retracer = new Retracer(index, direction, workers);
+        start = System.nanoTime();
+        if (output != null) {
+            retracer.retrace(input, output);
+        } else {
+            try (InputStream in = new FileInputStream(input)) {
+                OutputStream out = new BufferedOutputStream(System.out, 1 << 16);
+                retracer.retrace(in, out);
+            }
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        System.err.println("Retraced " + input.length() / (1024 * 1024) + " MB in " + millis + " ms ("
+                + input.length() / 1024 * 1000 / 1024 / millis + " MB/s).");
+    }
 }
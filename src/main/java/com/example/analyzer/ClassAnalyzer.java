@@ -0,0 +1,101 @@
+package com.example.analyzer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Collects the class header, declared members and LDC strings of a class in a
+ * single {@code ClassReader.accept} pass.
+ */
+public class ClassAnalyzer extends ClassVisitor {
+    private final List<Member> fields = new ArrayList<>();
+    private final List<Member> methods = new ArrayList<>();
+    private Set<String> foundStrings = new HashSet<>();
+    private String name;
+    private String superName;
+    private String[] interfaces;
+
+    public ClassAnalyzer() {
+        super(Opcodes.ASM9);
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        super.visit(version, access, name, signature, superName, interfaces);
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+        fields.add(new Member(access, name, descriptor));
+        return super.visitField(access, name, descriptor, signature, value);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        methods.add(new Member(access, name, descriptor));
+        return new MethodVisitor(Opcodes.ASM9, super.visitMethod(access, name, descriptor, signature, exceptions)) {
+            @Override
+            public void visitLdcInsn(Object value) {
+                if (value instanceof String) {
+                    foundStrings.add((String) value);
+                }
+                super.visitLdcInsn(value);
+            }
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSuperName() {
+        return superName;
+    }
+
+    public String[] getInterfaces() {
+        return interfaces;
+    }
+
+    /** Declared fields in class file order. */
+    public List<Member> getFields() {
+        return fields;
+    }
+
+    /** Declared methods in class file order, including constructors and initializers. */
+    public List<Member> getMethods() {
+        return methods;
+    }
+
+    public Set<String> getFoundStrings() {
+        return foundStrings;
+    }
+
+    /** Returns the found strings and forgets them, e.g. once they have been spilled to disk. */
+    public Set<String> takeFoundStrings() {
+        Set<String> strings = foundStrings;
+        foundStrings = new HashSet<>();
+        return strings;
+    }
+
+    public static final class Member {
+        public final int access;
+        public final String name;
+        public final String descriptor;
+
+        public Member(int access, String name, String descriptor) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.example.analyzer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.Opcodes;
+
+import com.example.symbol.LongIntHashMap;
+import com.example.symbol.SymbolTable;
+
+/**
+ * Supertype graph of the classes in the jar, with member resolution and
+ * override families. Names are internal ({@code pkg/Cls}); classes outside the
+ * jar are opaque and end a walk up the graph.
+ * <p>
+ * An override family groups the non-private, non-static declarations of one
+ * method signature that override each other, including an inherited method that
+ * implements an interface method on behalf of a subclass.
+ * <p>
+ * Everything is computed in the constructor. Classes and declarations are
+ * numbered with a {@link SymbolTable}, so a lookup is a few probes on packed
+ * {@code long} keys and allocates nothing; instances are immutable and safe to
+ * share between threads.
+ */
+public final class ClassHierarchy {
+    private static final int NOT_IN_FAMILY = -1;
+
+    // Class names are interned first, so ids 1..classCount are exactly the jar's classes.
+    private final SymbolTable symbols = new SymbolTable();
+    private final int classCount;
+    private final Map<String, List<String>> supertypes = new HashMap<>();
+    private final Map<String, List<String>> subtypes = new HashMap<>();
+    // Per class id: the classes searched to resolve a field, the superclass chain
+    // starting with the class itself, and every supertype nearest first.
+    private final int[][] fieldLookupOrder;
+    private final int[][] superclassChain;
+    private final int[][] supertypeIds;
+
+    // Packed member key -> 1 for fields, declaration index + 1 for methods.
+    private final LongIntHashMap declaredFields = new LongIntHashMap();
+    private final LongIntHashMap declaredMethods = new LongIntHashMap();
+    private int methodCount;
+    private int[] methodOwner = new int[16];
+    private int[] methodAccess = new int[16];
+    private int[] methodSignature = new int[16];
+    private boolean[] methodOverridable = new boolean[16];
+    // Per class id, its declarations are the indexes firstMethod[id] to firstMethod[id + 1] - 1.
+    private final int[] firstMethod;
+
+    // Declaration index -> family root, or NOT_IN_FAMILY.
+    private int[] familyRoots;
+    // Family root + 1 -> index + 1 into families.
+    private final LongIntHashMap familyIndexes = new LongIntHashMap();
+    private final List<List<String>> families = new ArrayList<>();
+
+    public ClassHierarchy(Iterable<ClassAnalyzer> analyzers) {
+        Map<String, ClassAnalyzer> classes = new HashMap<>();
+        List<ClassAnalyzer> ordered = new ArrayList<>();
+        for (ClassAnalyzer analyzer : analyzers) {
+            if (classes.putIfAbsent(analyzer.getName(), analyzer) == null) {
+                symbols.intern(analyzer.getName());
+                ordered.add(analyzer);
+            }
+        }
+        classCount = ordered.size();
+
+        fieldLookupOrder = new int[classCount + 1][];
+        superclassChain = new int[classCount + 1][];
+        supertypeIds = new int[classCount + 1][];
+        firstMethod = new int[classCount + 2];
+        for (int id = 1; id <= classCount; id++) {
+            ClassAnalyzer analyzer = ordered.get(id - 1);
+            for (ClassAnalyzer.Member field : analyzer.getFields()) {
+                declaredFields.put(symbols.internMember(analyzer.getName(), field.name, field.descriptor), 1);
+            }
+            firstMethod[id] = methodCount;
+            for (ClassAnalyzer.Member method : analyzer.getMethods()) {
+                declareMethod(id, analyzer.getName(), method);
+            }
+        }
+        firstMethod[classCount + 1] = methodCount;
+
+        for (int id = 1; id <= classCount; id++) {
+            String name = ordered.get(id - 1).getName();
+            List<String> types = collectSupertypes(name, classes);
+            supertypes.put(name, types);
+            supertypeIds[id] = ids(types);
+            superclassChain[id] = ids(collectSuperclasses(name, classes));
+            Set<String> fieldOrder = new LinkedHashSet<>();
+            collectFieldLookupOrder(name, classes, fieldOrder);
+            fieldLookupOrder[id] = ids(fieldOrder);
+            for (String type : types) {
+                subtypes.computeIfAbsent(type, key -> new ArrayList<>()).add(name);
+            }
+        }
+        buildFamilies();
+    }
+
+    public boolean contains(String internalName) {
+        return classId(internalName) != 0;
+    }
+
+    /** Supertypes of {@code internalName} inside the jar, nearest first, excluding itself. */
+    public List<String> getSupertypes(String internalName) {
+        return supertypes.getOrDefault(internalName, Collections.emptyList());
+    }
+
+    /** Classes of the jar that have {@code internalName} as a supertype, in class order. */
+    public List<String> getSubtypes(String internalName) {
+        return subtypes.getOrDefault(internalName, Collections.emptyList());
+    }
+
+    /**
+     * Returns the jar class that declares the field a reference to
+     * {@code owner.name:descriptor} resolves to, or {@code null} when it is not
+     * declared in the jar. Lookup order follows the JVM: the class, its
+     * superinterfaces, then its superclass.
+     */
+    public String resolveField(String owner, String name, String descriptor) {
+        int ownerId = classId(owner);
+        if (ownerId == 0) {
+            return null;
+        }
+        int signature = symbols.findSignature(name, descriptor);
+        if (signature == SymbolTable.ABSENT) {
+            return null;
+        }
+        for (int type : fieldLookupOrder[ownerId]) {
+            if (declaredFields.containsKey(SymbolTable.pack(type, signature))) {
+                return symbols.symbol(type);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the jar class that declares the method a reference to
+     * {@code owner.name descriptor} resolves to, or {@code null} when it is not
+     * declared in the jar. The superclass chain is searched before interfaces.
+     */
+    public String resolveMethod(String owner, String name, String descriptor) {
+        int ownerId = classId(owner);
+        if (ownerId == 0) {
+            return null;
+        }
+        int signature = symbols.findSignature(name, descriptor);
+        if (signature == SymbolTable.ABSENT) {
+            return null;
+        }
+        for (int type : superclassChain[ownerId]) {
+            if (declaredMethods.containsKey(SymbolTable.pack(type, signature))) {
+                return symbols.symbol(type);
+            }
+        }
+        for (int type : supertypeIds[ownerId]) {
+            int declaration = declaredMethods.get(SymbolTable.pack(type, signature));
+            if (declaration != 0 && (methodAccess[declaration - 1] & Opcodes.ACC_PRIVATE) == 0) {
+                return symbols.symbol(type);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the owner that represents the override family of the declaration
+     * {@code owner.name descriptor}; declarations outside any family represent themselves.
+     */
+    public String getFamilyOwner(String owner, String name, String descriptor) {
+        int declaration = declaration(owner, name, descriptor);
+        if (declaration < 0 || familyRoots[declaration] == NOT_IN_FAMILY) {
+            return owner;
+        }
+        return symbols.symbol(methodOwner[familyRoots[declaration]]);
+    }
+
+    /** Every owner declaring a method in the family represented by {@code familyOwner}, in class order. */
+    public List<String> getFamilyMembers(String familyOwner, String name, String descriptor) {
+        int declaration = declaration(familyOwner, name, descriptor);
+        int family = declaration < 0 ? 0 : familyIndexes.get(declaration + 1L);
+        return family != 0 ? families.get(family - 1) : Collections.singletonList(familyOwner);
+    }
+
+    private int classId(String internalName) {
+        int id = symbols.find(internalName);
+        return id != SymbolTable.ABSENT && id <= classCount ? id : 0;
+    }
+
+    /** Index of the declaration of {@code owner.name descriptor}, or {@code -1}. */
+    private int declaration(String owner, String name, String descriptor) {
+        long key = symbols.findMember(owner, name, descriptor);
+        return key == SymbolTable.ABSENT ? -1 : declaredMethods.get(key) - 1;
+    }
+
+    private void declareMethod(int owner, String ownerName, ClassAnalyzer.Member method) {
+        long key = symbols.internMember(ownerName, method.name, method.descriptor);
+        if (declaredMethods.containsKey(key)) {
+            return;
+        }
+        if (methodCount == methodOwner.length) {
+            int capacity = methodCount * 2;
+            methodOwner = Arrays.copyOf(methodOwner, capacity);
+            methodAccess = Arrays.copyOf(methodAccess, capacity);
+            methodSignature = Arrays.copyOf(methodSignature, capacity);
+            methodOverridable = Arrays.copyOf(methodOverridable, capacity);
+        }
+        methodOwner[methodCount] = owner;
+        methodAccess[methodCount] = method.access;
+        methodSignature[methodCount] = (int) key;
+        methodOverridable[methodCount] = (method.access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC)) == 0
+                && method.name.charAt(0) != '<';
+        declaredMethods.put(key, ++methodCount);
+    }
+
+    private int[] ids(Collection<String> names) {
+        int[] ids = new int[names.size()];
+        int i = 0;
+        for (String name : names) {
+            ids[i++] = symbols.find(name);
+        }
+        return ids;
+    }
+
+    private static List<String> collectSupertypes(String internalName, Map<String, ClassAnalyzer> classes) {
+        Set<String> seen = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(internalName);
+        while (!queue.isEmpty()) {
+            ClassAnalyzer analyzer = classes.get(queue.poll());
+            if (analyzer == null) {
+                continue;
+            }
+            if (analyzer.getSuperName() != null && seen.add(analyzer.getSuperName())) {
+                queue.add(analyzer.getSuperName());
+            }
+            if (analyzer.getInterfaces() != null) {
+                for (String itf : analyzer.getInterfaces()) {
+                    if (seen.add(itf)) {
+                        queue.add(itf);
+                    }
+                }
+            }
+        }
+        seen.remove(internalName);
+        seen.removeIf(name -> !classes.containsKey(name));
+        return seen.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(seen));
+    }
+
+    private static List<String> collectSuperclasses(String internalName, Map<String, ClassAnalyzer> classes) {
+        List<String> chain = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        String current = internalName;
+        while (current != null && classes.containsKey(current) && seen.add(current)) {
+            chain.add(current);
+            current = classes.get(current).getSuperName();
+        }
+        return chain;
+    }
+
+    private static void collectFieldLookupOrder(String owner, Map<String, ClassAnalyzer> classes, Set<String> order) {
+        String current = owner;
+        while (current != null && !order.contains(current)) {
+            ClassAnalyzer analyzer = classes.get(current);
+            if (analyzer == null) {
+                return;
+            }
+            order.add(current);
+            if (analyzer.getInterfaces() != null) {
+                for (String itf : analyzer.getInterfaces()) {
+                    collectFieldLookupOrder(itf, classes, order);
+                }
+            }
+            current = analyzer.getSuperName();
+        }
+    }
+
+    private void buildFamilies() {
+        int[] parents = new int[methodCount];
+        Arrays.fill(parents, NOT_IN_FAMILY);
+        for (int id = 1; id <= classCount; id++) {
+            // Signature -> first overridable declaration + 1 seen while walking up from the class.
+            LongIntHashMap firstDeclaration = new LongIntHashMap();
+            linkOverrides(id, firstDeclaration, parents);
+            for (int type : supertypeIds[id]) {
+                linkOverrides(type, firstDeclaration, parents);
+            }
+        }
+
+        familyRoots = parents;
+        for (int declaration = 0; declaration < methodCount; declaration++) {
+            if (parents[declaration] == NOT_IN_FAMILY) {
+                continue;
+            }
+            int root = findRoot(parents, declaration);
+            parents[declaration] = root;
+            int family = familyIndexes.get(root + 1L);
+            if (family == 0) {
+                families.add(new ArrayList<>());
+                family = families.size();
+                familyIndexes.put(root + 1L, family);
+            }
+            families.get(family - 1).add(symbols.symbol(methodOwner[declaration]));
+        }
+    }
+
+    private void linkOverrides(int type, LongIntHashMap firstDeclaration, int[] parents) {
+        for (int declaration = firstMethod[type]; declaration < firstMethod[type + 1]; declaration++) {
+            if (!methodOverridable[declaration]) {
+                continue;
+            }
+            int first = firstDeclaration.putIfAbsent(methodSignature[declaration], declaration + 1) - 1;
+            if (first != declaration) {
+                union(parents, declaration, first);
+            }
+        }
+    }
+
+    private static int findRoot(int[] parents, int declaration) {
+        int root = declaration;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        // Path compression keeps later lookups flat.
+        int current = declaration;
+        while (current != root) {
+            int next = parents[current];
+            parents[current] = root;
+            current = next;
+        }
+        return root;
+    }
+
+    /** Links the family of {@code child} under the family of {@code ancestor}. */
+    private static void union(int[] parents, int ancestor, int child) {
+        if (parents[ancestor] == NOT_IN_FAMILY) {
+            parents[ancestor] = ancestor;
+        }
+        if (parents[child] == NOT_IN_FAMILY) {
+            parents[child] = child;
+        }
+        int ancestorRoot = findRoot(parents, ancestor);
+        int childRoot = findRoot(parents, child);
+        if (ancestorRoot != childRoot) {
+            parents[childRoot] = ancestorRoot;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.analyzer;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Walks the constant pool and declared members of a class file without
+ * visiting any code, reporting the symbols a rename could touch.
+ */
+public final class ConstantPoolScanner {
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+
+    private ConstantPoolScanner() {
+    }
+
+    /** Constant pool callbacks receive the index of the entry they describe. */
+    public interface Visitor {
+        /** A {@code CONSTANT_Class} entry; array classes are reported in descriptor form. */
+        void visitClass(int index, String internalName);
+
+        void visitFieldRef(int index, String owner, String name, String descriptor);
+
+        void visitMethodRef(int index, String owner, String name, String descriptor);
+
+        /** A {@code CONSTANT_Utf8} entry, which covers strings, descriptors and signatures. */
+        void visitUtf8(int index, String value);
+
+        void visitDeclaredField(String owner, String name, String descriptor);
+
+        void visitDeclaredMethod(String owner, String name, String descriptor);
+    }
+
+    public static void scan(byte[] classBytes, Visitor visitor) {
+        scan(new ClassReader(classBytes), visitor);
+    }
+
+    public static void scan(ClassReader reader, Visitor visitor) {
+        char[] buffer = new char[reader.getMaxStringLength()];
+        int itemCount = reader.getItemCount();
+        for (int i = 1; i < itemCount; i++) {
+            int offset = reader.getItem(i);
+            if (offset == 0) {
+                continue;
+            }
+            switch (reader.readByte(offset - 1)) {
+                case CONSTANT_UTF8:
+                    visitor.visitUtf8(i, readUtf8Entry(reader, offset, buffer));
+                    break;
+                case CONSTANT_CLASS:
+                    visitor.visitClass(i, reader.readUTF8(offset, buffer));
+                    break;
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF: {
+                    String owner = reader.readClass(offset, buffer);
+                    int nameAndType = reader.getItem(reader.readUnsignedShort(offset + 2));
+                    String name = reader.readUTF8(nameAndType, buffer);
+                    String descriptor = reader.readUTF8(nameAndType + 2, buffer);
+                    if (reader.readByte(offset - 1) == CONSTANT_FIELDREF) {
+                        visitor.visitFieldRef(i, owner, name, descriptor);
+                    } else {
+                        visitor.visitMethodRef(i, owner, name, descriptor);
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        String owner = reader.getClassName();
+        int offset = reader.header + 6;
+        offset += 2 + reader.readUnsignedShort(offset) * 2;
+        int fieldCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < fieldCount; i++) {
+            visitor.visitDeclaredField(owner, reader.readUTF8(offset + 2, buffer), reader.readUTF8(offset + 4, buffer));
+            offset = skipAttributes(reader, offset + 6);
+        }
+        int methodCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < methodCount; i++) {
+            visitor.visitDeclaredMethod(owner, reader.readUTF8(offset + 2, buffer), reader.readUTF8(offset + 4, buffer));
+            offset = skipAttributes(reader, offset + 6);
+        }
+    }
+
+    /** Decodes the modified UTF-8 body of the {@code CONSTANT_Utf8} entry at {@code offset}. */
+    private static String readUtf8Entry(ClassReader reader, int offset, char[] buffer) {
+        int length = reader.readUnsignedShort(offset);
+        int current = offset + 2;
+        int end = current + length;
+        int count = 0;
+        while (current < end) {
+            int b = reader.readByte(current++);
+            if ((b & 0x80) == 0) {
+                buffer[count++] = (char) (b & 0x7F);
+            } else if ((b & 0xE0) == 0xC0) {
+                buffer[count++] = (char) (((b & 0x1F) << 6) + (reader.readByte(current++) & 0x3F));
+            } else {
+                buffer[count++] = (char) (((b & 0xF) << 12)
+                        + ((reader.readByte(current++) & 0x3F) << 6)
+                        + (reader.readByte(current++) & 0x3F));
+            }
+        }
+        return new String(buffer, 0, count);
+    }
+
+    private static int skipAttributes(ClassReader reader, int offset) {
+        int attributeCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            offset += 6 + reader.readInt(offset + 2);
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.analyzer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out collision-free member names per class. Fields and methods are
+ * separate namespaces, as they are in the class file format.
+ * <p>
+ * A name that is already taken gets the first free {@code _n} suffix. The
+ * counter behind {@code n} is kept per class, kind and requested name and only
+ * moves forward, so each allocation costs O(1) amortized however many members
+ * ask for the same name. The names given out for a class depend only on the
+ * order of the calls for that class and on the names already reserved in the
+ * classes it inherits from, never on what other threads are doing.
+ */
+public final class NameAllocator {
+    public enum Kind {
+        FIELD, METHOD
+    }
+
+    private final Map<String, ClassNames> classes = new ConcurrentHashMap<>();
+
+    /** Reserves {@code name}, or a suffixed variant of it, in {@code owner} and returns it. */
+    public String allocate(String owner, Kind kind, String name) {
+        return names(owner).allocate(kind, name);
+    }
+
+    /**
+     * Reserves, in {@code owner} only, a name that no class of {@code inherited}
+     * uses either, so the member does not hide one it inherits. The classes of
+     * {@code inherited} must not be allocating at the same time.
+     */
+    public String allocate(String owner, List<String> inherited, Kind kind, String name) {
+        if (inherited.isEmpty()) {
+            return allocate(owner, kind, name);
+        }
+        ClassNames names = names(owner);
+        String candidate = name;
+        while (!isFreeInAll(inherited, kind, candidate) || !names.tryReserve(kind, candidate)) {
+            candidate = names.nextCandidate(kind, name);
+        }
+        return candidate;
+    }
+
+    /** Marks {@code name} as used in {@code owner}, such as a member that keeps its name. */
+    public void reserve(String owner, Kind kind, String name) {
+        names(owner).reserve(kind, name);
+    }
+
+    /**
+     * Reserves one name that is free in every class of {@code owners}, for members
+     * that must share a name such as an override family. The suffix counter is
+     * the first owner's.
+     */
+    public String allocate(List<String> owners, Kind kind, String name) {
+        if (owners.size() == 1) {
+            return allocate(owners.get(0), kind, name);
+        }
+        ClassNames first = names(owners.get(0));
+        String candidate = name;
+        while (!isFreeInAll(owners, kind, candidate)) {
+            candidate = first.nextCandidate(kind, name);
+        }
+        for (String owner : owners) {
+            names(owner).reserve(kind, candidate);
+        }
+        return candidate;
+    }
+
+    /**
+     * Reserves a method name for an override family as {@link #allocate(List, Kind, String)}
+     * does, and also skips names whose signature with {@code descriptor} is
+     * reserved in a class of {@code related}, where the family would override,
+     * or be overridden by, a method outside it. The signature is reserved in
+     * every owner.
+     */
+    public String allocateMethod(List<String> owners, Collection<String> related, String name, String descriptor) {
+        ClassNames first = names(owners.get(0));
+        String candidate = name;
+        while (!isFreeInAll(owners, Kind.METHOD, candidate) || isSignatureUsed(related, candidate + descriptor)) {
+            candidate = first.nextCandidate(Kind.METHOD, name);
+        }
+        for (String owner : owners) {
+            ClassNames names = names(owner);
+            names.reserve(Kind.METHOD, candidate);
+            names.reserveSignature(candidate + descriptor);
+        }
+        return candidate;
+    }
+
+    /** Marks the method {@code name descriptor} as declared in {@code owner}, such as one that keeps its name. */
+    public void reserveSignature(String owner, String name, String descriptor) {
+        names(owner).reserveSignature(name + descriptor);
+    }
+
+    private boolean isSignatureUsed(Collection<String> classes, String signature) {
+        for (String owner : classes) {
+            ClassNames names = this.classes.get(owner);
+            if (names != null && names.isSignatureUsed(signature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isFreeInAll(List<String> owners, Kind kind, String name) {
+        for (String owner : owners) {
+            if (names(owner).isUsed(kind, name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ClassNames names(String owner) {
+        return classes.computeIfAbsent(owner, key -> new ClassNames());
+    }
+
+    private static final class ClassNames {
+        private final Set<String> fields = new HashSet<>();
+        private final Set<String> methods = new HashSet<>();
+        // Method names with their descriptors, as an override would match them.
+        private final Set<String> signatures = new HashSet<>();
+        private final Map<String, Integer> fieldCounters = new HashMap<>();
+        private final Map<String, Integer> methodCounters = new HashMap<>();
+
+        synchronized String allocate(Kind kind, String name) {
+            Set<String> used = used(kind);
+            String candidate = name;
+            while (!used.add(candidate)) {
+                candidate = nextCandidate(kind, name);
+            }
+            return candidate;
+        }
+
+        synchronized boolean tryReserve(Kind kind, String name) {
+            return used(kind).add(name);
+        }
+
+        synchronized boolean isUsed(Kind kind, String name) {
+            return used(kind).contains(name);
+        }
+
+        synchronized void reserve(Kind kind, String name) {
+            used(kind).add(name);
+        }
+
+        synchronized void reserveSignature(String signature) {
+            signatures.add(signature);
+        }
+
+        synchronized boolean isSignatureUsed(String signature) {
+            return signatures.contains(signature);
+        }
+
+        synchronized String nextCandidate(Kind kind, String name) {
+            Map<String, Integer> counters = kind == Kind.FIELD ? fieldCounters : methodCounters;
+            int counter = counters.getOrDefault(name, 0);
+            counters.put(name, counter + 1);
+            return name + "_" + counter;
+        }
+
+        private Set<String> used(Kind kind) {
+            return kind == Kind.FIELD ? fields : methods;
+        }
+    }
+}
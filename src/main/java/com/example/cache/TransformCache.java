@@ -0,0 +1,158 @@
+package com.example.cache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * On-disk store of transformed class bytes keyed by a content hash. Entries are
+ * spread over 256 sub-directories; the least recently used ones are evicted on
+ * {@link #close()} once the directory grows past its size limit.
+ */
+public class TransformCache implements Closeable {
+    private static final String SUFFIX = ".class";
+    private static final byte[] FORMAT = "jar-obfuscation-rename/transform-1".getBytes(StandardCharsets.UTF_8);
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public TransformCache(File directory, long maxBytes) throws IOException {
+        this.directory = directory.toPath();
+        this.maxBytes = maxBytes;
+        Files.createDirectories(this.directory);
+    }
+
+    /**
+     * Builds a cache key from the input class bytes, the digest of the mapping
+     * entries that class picks up, and {@code variant}, which must change
+     * whenever an option alters the transform output.
+     */
+    public static String key(byte[] classBytes, byte[] mappingDigest, String variant) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        digest.update(FORMAT);
+        digest.update(variant.getBytes(StandardCharsets.UTF_8));
+        digest.update(classBytes);
+        digest.update(mappingDigest);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /** Returns the cached bytes for {@code key}, or {@code null} on a miss. */
+    public byte[] get(String key) {
+        Path path = pathFor(key);
+        try {
+            byte[] data = Files.readAllBytes(path);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return data;
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return null;
+        } catch (IOException e) {
+            misses.incrementAndGet();
+            System.err.println("Ignoring unreadable cache entry " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void put(String key, byte[] data) {
+        Path path = pathFor(key);
+        try {
+            Files.createDirectories(path.getParent());
+            Path temp = Files.createTempFile(path.getParent(), key, ".tmp");
+            try {
+                Files.write(temp, data);
+                try {
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // another worker stored the same key first
+        } catch (IOException e) {
+            System.err.println("Could not write cache entry " + path + ": " + e.getMessage());
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        evict();
+    }
+
+    private void evict() throws IOException {
+        List<CachedFile> files = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> walk = Files.walk(directory, 2)) {
+            for (Path path : (Iterable<Path>) walk::iterator) {
+                if (!path.getFileName().toString().endsWith(SUFFIX)) {
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                files.add(new CachedFile(path, attributes.size(), attributes.lastModifiedTime()));
+                total += attributes.size();
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+
+        files.sort(Comparator.comparing(file -> file.lastModified));
+        for (CachedFile file : files) {
+            if (total <= maxBytes) {
+                break;
+            }
+            Files.deleteIfExists(file.path);
+            total -= file.size;
+        }
+    }
+
+    private Path pathFor(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key.substring(2) + SUFFIX);
+    }
+
+    private static final class CachedFile {
+        final Path path;
+        final long size;
+        final FileTime lastModified;
+
+        CachedFile(Path path, long size, FileTime lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
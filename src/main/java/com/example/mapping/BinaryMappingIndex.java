@@ -0,0 +1,459 @@
+package com.example.mapping;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import com.example.JEBJsonParser;
+import com.example.JEBJsonParser.MappingSink;
+import com.example.JEBJsonParser.Node;
+import com.example.symbol.LongIntHashMap;
+
+/**
+ * {@link MappingIndex} over a compiled mapping file opened through a
+ * {@link MappedByteBuffer}. Nothing is parsed on open; lookups binary search
+ * the file in place. Answers match {@link HashMappingIndex} for the same input.
+ * <p>
+ * Layout, all integers big-endian:
+ * <pre>
+ * magic "JRMAPIDX", version
+ * string count, then the record count of each of the seven tables below
+ * method node count, field node count
+ * string offsets (count + 1) into the string data
+ * classes        (name, newName)
+ * methods, fields: exact (owner, name, descriptor, newName),
+ *                  by owner (owner, name, newName), by name (name, newName)
+ * string data     UTF-8, sorted by unsigned byte order
+ * </pre>
+ * Strings are deduplicated and sorted, so a string id compares like the string
+ * itself and every table is sorted by its key ids.
+ */
+public final class BinaryMappingIndex implements MappingIndex {
+    private static final byte[] MAGIC = "JRMAPIDX".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int TABLE_COUNT = 7;
+    private static final int HEADER_SIZE = MAGIC.length + 4 * (2 + TABLE_COUNT + 2);
+
+    private final ByteBuffer buffer;
+    private final int stringCount;
+    private final int stringOffsets;
+    private final int stringData;
+    private final Table classes;
+    private final MemberTables methods;
+    private final MemberTables fields;
+
+    private BinaryMappingIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(0, magic);
+        if (!Arrays.equals(magic, MAGIC) || buffer.getInt(MAGIC.length) != VERSION) {
+            throw new IOException("Not a compiled mapping (version " + VERSION + ")");
+        }
+        int position = MAGIC.length + 4;
+        stringCount = buffer.getInt(position);
+        int[] counts = new int[TABLE_COUNT];
+        for (int i = 0; i < TABLE_COUNT; i++) {
+            counts[i] = buffer.getInt(position + 4 + 4 * i);
+        }
+        int methodNodes = buffer.getInt(HEADER_SIZE - 8);
+        int fieldNodes = buffer.getInt(HEADER_SIZE - 4);
+
+        stringOffsets = HEADER_SIZE;
+        int offset = stringOffsets + 4 * (stringCount + 1);
+        classes = new Table(offset, counts[0], 2);
+        offset = classes.end();
+        methods = new MemberTables(offset, counts[1], counts[2], counts[3], methodNodes);
+        offset = methods.end();
+        fields = new MemberTables(offset, counts[4], counts[5], counts[6], fieldNodes);
+        stringData = fields.end();
+    }
+
+    /** Maps a file written by {@link #compile(File, File)}. */
+    public static BinaryMappingIndex open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BinaryMappingIndex(buffer);
+        }
+    }
+
+    /** Returns whether {@code file} starts with the compiled mapping magic. */
+    public static boolean isCompiled(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /** Parses a JEB {@code codedata.txt} and writes it as a compiled mapping. */
+    public static void compile(File jsonFile, File outputFile) throws IOException {
+        Compiler compiler = new Compiler();
+        JEBJsonParser.parse(jsonFile, compiler);
+        compiler.write(outputFile);
+    }
+
+    @Override
+    public String findClass(String className) {
+        int id = stringId(className);
+        return id < 0 ? null : string(classes.find(id, -1, -1));
+    }
+
+    @Override
+    public void forEachClass(BiConsumer<String, String> action) {
+        for (int i = 0; i < classes.count; i++) {
+            int record = classes.offset + i * classes.width * 4;
+            action.accept(string(buffer.getInt(record)), string(buffer.getInt(record + 4)));
+        }
+    }
+
+    @Override
+    public String findMethod(String owner, String name, String descriptor) {
+        return methods.find(owner, name, descriptor);
+    }
+
+    @Override
+    public String findField(String owner, String name, String descriptor) {
+        return fields.find(owner, name, descriptor);
+    }
+
+    @Override
+    public int classCount() {
+        return classes.count;
+    }
+
+    @Override
+    public int methodCount() {
+        return methods.nodeCount;
+    }
+
+    @Override
+    public int fieldCount() {
+        return fields.nodeCount;
+    }
+
+    /** Binary searches the sorted string table; {@code -1} when {@code value} is not in it. */
+    private int stringId(String value) {
+        byte[] key = value.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = stringCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareString(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareString(int id, byte[] key) {
+        int start = stringData + buffer.getInt(stringOffsets + 4 * id);
+        int length = stringData + buffer.getInt(stringOffsets + 4 * id + 4) - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(start + i), key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private String string(int id) {
+        if (id < 0) {
+            return null;
+        }
+        int start = buffer.getInt(stringOffsets + 4 * id);
+        int end = buffer.getInt(stringOffsets + 4 * id + 4);
+        byte[] bytes = new byte[end - start];
+        buffer.get(stringData + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Fixed-width records of string ids: up to three key columns, then the new name. */
+    private final class Table {
+        final int offset;
+        final int count;
+        final int width;
+
+        Table(int offset, int count, int width) {
+            this.offset = offset;
+            this.count = count;
+            this.width = width;
+        }
+
+        int end() {
+            return offset + count * width * 4;
+        }
+
+        /** Returns the new name id of the record keyed by the given ids ({@code -1} for unused columns). */
+        int find(int first, int second, int third) {
+            int keys = width - 1;
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int record = offset + mid * width * 4;
+                int cmp = Integer.compare(buffer.getInt(record), first);
+                if (cmp == 0 && keys > 1) {
+                    cmp = Integer.compare(buffer.getInt(record + 4), second);
+                }
+                if (cmp == 0 && keys > 2) {
+                    cmp = Integer.compare(buffer.getInt(record + 8), third);
+                }
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return buffer.getInt(record + keys * 4);
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final class MemberTables {
+        final Table exact;
+        final Table byOwner;
+        final Table byName;
+        final int nodeCount;
+
+        MemberTables(int offset, int exactCount, int ownerCount, int nameCount, int nodeCount) {
+            exact = new Table(offset, exactCount, 4);
+            byOwner = new Table(exact.end(), ownerCount, 3);
+            byName = new Table(byOwner.end(), nameCount, 2);
+            this.nodeCount = nodeCount;
+        }
+
+        int end() {
+            return byName.end();
+        }
+
+        String find(String owner, String name, String descriptor) {
+            int nameId = stringId(name);
+            if (nameId < 0) {
+                return null;
+            }
+            if (owner != null) {
+                int ownerId = stringId(owner);
+                if (ownerId >= 0) {
+                    if (descriptor != null) {
+                        int descriptorId = stringId(descriptor);
+                        if (descriptorId >= 0) {
+                            int found = exact.find(ownerId, nameId, descriptorId);
+                            if (found >= 0) {
+                                return string(found);
+                            }
+                        }
+                    }
+                    int found = byOwner.find(ownerId, nameId, -1);
+                    if (found >= 0) {
+                        return string(found);
+                    }
+                }
+            }
+            return string(byName.find(nameId, -1, -1));
+        }
+    }
+
+    /** Collects parser output with the same first-entry-wins rules as {@link HashMappingIndex}. */
+    private static final class Compiler implements MappingSink {
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final Records classes = new Records(1);
+        private final MemberRecords methods = new MemberRecords();
+        private final MemberRecords fields = new MemberRecords();
+
+        @Override
+        public void addClass(Node node) {
+            String newName = node.owner.isEmpty() ? node.newName : node.owner + "." + node.newName;
+            int desc = id(node.desc);
+            classes.putIfAbsent(Records.key(desc), desc, 0, 0, id(newName));
+        }
+
+        @Override
+        public void addMethod(Node node) {
+            methods.add(this, node);
+        }
+
+        @Override
+        public void addField(Node node) {
+            fields.add(this, node);
+        }
+
+        private int id(String value) {
+            Integer id = stringIds.get(value);
+            if (id == null) {
+                id = strings.size();
+                stringIds.put(value, id);
+                strings.add(value);
+            }
+            return id;
+        }
+
+        void write(File outputFile) throws IOException {
+            // Renumber strings in sorted order so ids compare like the strings they stand for.
+            byte[][] encoded = new byte[strings.size()][];
+            Integer[] order = new Integer[strings.size()];
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(encoded[a], encoded[b]));
+            int[] rank = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                rank[order[i]] = i;
+            }
+
+            List<int[]> classRecords = records(classes, rank);
+            List<int[]> methodExact = records(methods.exact, rank);
+            List<int[]> methodOwner = records(methods.byOwner, rank);
+            List<int[]> methodName = records(methods.byName, rank);
+            List<int[]> fieldExact = records(fields.exact, rank);
+            List<int[]> fieldOwner = records(fields.byOwner, rank);
+            List<int[]> fieldName = records(fields.byName, rank);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)))) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(encoded.length);
+                for (List<int[]> table : List.of(classRecords, methodExact, methodOwner, methodName,
+                        fieldExact, fieldOwner, fieldName)) {
+                    out.writeInt(table.size());
+                }
+                out.writeInt(methods.nodeCount);
+                out.writeInt(fields.nodeCount);
+
+                int offset = 0;
+                out.writeInt(offset);
+                for (Integer id : order) {
+                    offset += encoded[id].length;
+                    out.writeInt(offset);
+                }
+                for (List<int[]> table : List.of(classRecords, methodExact, methodOwner, methodName,
+                        fieldExact, fieldOwner, fieldName)) {
+                    for (int[] record : table) {
+                        for (int value : record) {
+                            out.writeInt(value);
+                        }
+                    }
+                }
+                for (Integer id : order) {
+                    out.write(encoded[id]);
+                }
+            }
+        }
+
+        private static List<int[]> records(Records entries, int[] rank) {
+            int width = entries.width + 1;
+            List<int[]> records = new ArrayList<>(entries.count);
+            for (int i = 0; i < entries.count; i++) {
+                int[] record = new int[width];
+                for (int c = 0; c < width; c++) {
+                    record[c] = rank[entries.columns[i * width + c]];
+                }
+                records.add(record);
+            }
+            records.sort(BinaryMappingIndex::compareKeys);
+            return records;
+        }
+    }
+
+    /** Orders records by their key columns; the last column is the new name. */
+    private static int compareKeys(int[] a, int[] b) {
+        for (int i = 0; i < a.length - 1; i++) {
+            int cmp = Integer.compare(a[i], b[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private static final class MemberRecords {
+        final Records exact = new Records(3);
+        final Records byOwner = new Records(2);
+        final Records byName = new Records(1);
+        int nodeCount;
+
+        void add(Compiler compiler, Node node) {
+            int owner = compiler.id(node.owner);
+            int name = compiler.id(node.name);
+            int newName = compiler.id(node.newName);
+            // The owner-and-name record's index stands in for the pair in the exact key.
+            int pair = byOwner.putIfAbsent(Records.key(owner, name), owner, name, 0, newName);
+            if (node.desc != null) {
+                int desc = compiler.id(node.desc);
+                exact.putIfAbsent(Records.key(pair, desc), owner, name, desc, newName);
+            }
+            byName.putIfAbsent(Records.key(name), name, 0, 0, newName);
+            nodeCount++;
+        }
+    }
+
+    /**
+     * First-wins records of string ids in insertion order, deduplicated on a
+     * key packed into a {@code long}. Each record is {@code width} key columns
+     * followed by the new name.
+     */
+    private static final class Records {
+        final int width;
+        private final LongIntHashMap indexes = new LongIntHashMap();
+        int[] columns;
+        int count;
+
+        Records(int width) {
+            this.width = width;
+            this.columns = new int[16 * (width + 1)];
+        }
+
+        static long key(int id) {
+            return id + 1L;
+        }
+
+        static long key(int first, int second) {
+            return (first + 1L) << 32 | second + 1L;
+        }
+
+        /** Adds the record unless its key is already present; returns the index of the record kept. */
+        int putIfAbsent(long key, int a, int b, int c, int newName) {
+            int existing = indexes.get(key);
+            if (existing != 0) {
+                return existing - 1;
+            }
+            int stride = width + 1;
+            if ((count + 1) * stride > columns.length) {
+                columns = Arrays.copyOf(columns, columns.length * 2);
+            }
+            int offset = count * stride;
+            columns[offset] = a;
+            if (width > 1) {
+                columns[offset + 1] = b;
+            }
+            if (width > 2) {
+                columns[offset + 2] = c;
+            }
+            columns[offset + width] = newName;
+            indexes.put(key, count + 1);
+            return count++;
+        }
+    }
+}
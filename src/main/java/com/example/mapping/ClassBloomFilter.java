@@ -0,0 +1,125 @@
+package com.example.mapping;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import com.example.zip.EntrySource;
+
+/**
+ * Bloom filter of the internal class names ({@code pkg/Cls}) in one or more jars,
+ * read from their central directories. Lets the mapping parser drop member
+ * entries whose owner cannot be in the jar before it builds a node for them.
+ * A false positive only keeps an entry that is not needed; a name that was
+ * added is always reported as present.
+ */
+public final class ClassBloomFilter {
+    private static final int BITS_PER_NAME = 10;
+    private static final int HASHES = 4;
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int size;
+
+    private ClassBloomFilter(List<String> internalNames) {
+        bitCount = Math.max(64, (long) internalNames.size() * BITS_PER_NAME);
+        bits = new long[(int) ((bitCount + 63) >>> 6)];
+        for (String name : internalNames) {
+            add(name);
+        }
+        size = internalNames.size();
+    }
+
+    public static ClassBloomFilter of(List<String> internalNames) {
+        return new ClassBloomFilter(internalNames);
+    }
+
+    /**
+     * Collects the class entries of {@code jars}, which may be exploded directories.
+     * Jars nested in them are read too when {@code nestedJars} is set, which
+     * inflates those entries.
+     */
+    public static ClassBloomFilter scan(List<File> jars, boolean nestedJars) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (File jar : jars) {
+            try (EntrySource source = EntrySource.open(jar, Runtime.getRuntime().availableProcessors())) {
+                Enumeration<? extends ZipEntry> entries = source.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    if (name.endsWith(".class")) {
+                        names.add(name.substring(0, name.length() - 6));
+                    } else if (nestedJars && name.endsWith(".jar")) {
+                        try (InputStream in = source.getInputStream(entry)) {
+                            scanNested(new ZipInputStream(in), names);
+                        }
+                    }
+                }
+            }
+        }
+        return new ClassBloomFilter(names);
+    }
+
+    private static void scanNested(ZipInputStream in, List<String> names) throws IOException {
+        ZipEntry entry;
+        while ((entry = in.getNextEntry()) != null) {
+            String name = entry.getName();
+            if (name.endsWith(".class")) {
+                names.add(name.substring(0, name.length() - 6));
+            } else if (name.endsWith(".jar")) {
+                scanNested(new ZipInputStream(in), names);
+            }
+        }
+    }
+
+    /** Number of names added. */
+    public int size() {
+        return size;
+    }
+
+    public boolean mightContain(CharSequence internalName) {
+        return mightContain(internalName, 0, internalName.length());
+    }
+
+    /** Tests the name held in {@code text} between {@code start} and {@code end} without copying it. */
+    public boolean mightContain(CharSequence text, int start, int end) {
+        long hash = hash(text, start, end);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Integer.toUnsignedLong(first + i * second) % bitCount;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(CharSequence internalName) {
+        long hash = hash(internalName, 0, internalName.length());
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Integer.toUnsignedLong(first + i * second) % bitCount;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /** 64-bit FNV-1a over the chars, finished with a mix so both halves are usable. */
+    private static long hash(CharSequence text, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
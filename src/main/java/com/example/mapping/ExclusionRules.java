@@ -0,0 +1,227 @@
+package com.example.mapping;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.example.symbol.LongIntHashMap;
+
+/**
+ * Decides which classes keep their names. Rules, dotted or slashed:
+ * <ul>
+ * <li>{@code com.foo.Bar} - that class only;</li>
+ * <li>{@code com.foo.*} - the classes of package {@code com.foo};</li>
+ * <li>{@code com.foo.**} or {@code com.foo.} - {@code com.foo} and every package below it;</li>
+ * <li>any other glob, with {@code *} within a package, {@code **} across packages and {@code ?};</li>
+ * <li>{@code regex:<pattern>} - matched against the whole dotted name.</li>
+ * </ul>
+ * Exact names and package rules are compiled into one character trie that
+ * treats {@code .} and {@code /} alike, so internal names are matched as they
+ * are. Each name's decision is memoized; a repeated lookup is one hash probe
+ * and allocates nothing. Instances are immutable apart from the memo and are
+ * shared between threads.
+ */
+public final class ExclusionRules {
+    /** Classes that are never renamed: the platform's own. */
+    public static final List<String> PLATFORM = Collections.unmodifiableList(Arrays.asList("java.**", "javax.**", "android.**"));
+
+    private static final String REGEX = "regex:";
+    private static final int EXACT = 1;
+    private static final int PACKAGE = 2;
+    private static final int SUBTREE = 4;
+
+    private final List<String> rules;
+    // Trie transitions: ((state + 1) << 16 | char) -> child state; the root is state 0.
+    private final LongIntHashMap transitions = new LongIntHashMap();
+    private int[] flags = new int[16];
+    private int states = 1;
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final Map<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+    private ExclusionRules(List<String> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        for (String rule : this.rules) {
+            add(rule);
+        }
+    }
+
+    /** The {@link #PLATFORM} rules alone. */
+    public static ExclusionRules platform() {
+        return compile(PLATFORM);
+    }
+
+    public static ExclusionRules compile(Collection<String> rules) {
+        return new ExclusionRules(new ArrayList<>(rules));
+    }
+
+    /** Reads one rule per line; blank lines and lines starting with {@code #} are skipped. */
+    public static List<String> readRules(File file) throws IOException {
+        List<String> rules = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    rules.add(line);
+                }
+            }
+        }
+        return rules;
+    }
+
+    /** These rules plus an exact rule for each of {@code classNames}. */
+    public ExclusionRules withClasses(Collection<String> classNames) {
+        List<String> combined = new ArrayList<>(rules);
+        combined.addAll(classNames);
+        return new ExclusionRules(combined);
+    }
+
+    public List<String> getRules() {
+        return rules;
+    }
+
+    /** Whether the class, given by its dotted or internal name, keeps its name. */
+    public boolean isExcluded(String className) {
+        Boolean decision = decisions.get(className);
+        if (decision == null) {
+            decision = matches(className);
+            decisions.putIfAbsent(className, decision);
+        }
+        return decision;
+    }
+
+    private boolean matches(String className) {
+        if (matchesTrie(className)) {
+            return true;
+        }
+        if (!patterns.isEmpty()) {
+            String dotted = className.replace('/', '.');
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(dotted).matches()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesTrie(String className) {
+        if ((flags[0] & SUBTREE) != 0) {
+            return true;
+        }
+        int state = 0;
+        int length = className.length();
+        for (int i = 0; i < length; i++) {
+            state = transitions.get(key(state, normalize(className.charAt(i))));
+            if (state == 0) {
+                return false;
+            }
+            int flag = flags[state];
+            if ((flag & SUBTREE) != 0
+                    || (flag & EXACT) != 0 && i == length - 1
+                    || (flag & PACKAGE) != 0 && i < length - 1 && isSimpleName(className, i + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSimpleName(String className, int start) {
+        for (int i = start; i < className.length(); i++) {
+            char c = className.charAt(i);
+            if (c == '.' || c == '/') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(String rule) {
+        rule = rule.trim();
+        if (rule.startsWith(REGEX)) {
+            try {
+                patterns.add(Pattern.compile(rule.substring(REGEX.length())));
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid exclusion pattern: " + rule, e);
+            }
+            return;
+        }
+        if (rule.isEmpty()) {
+            throw new IllegalArgumentException("Empty exclusion rule");
+        }
+        rule = rule.replace('/', '.');
+        if (rule.endsWith(".**") && !hasWildcard(rule, rule.length() - 3)) {
+            insert(rule.substring(0, rule.length() - 2), SUBTREE);
+        } else if (rule.endsWith(".*") && !hasWildcard(rule, rule.length() - 2)) {
+            insert(rule.substring(0, rule.length() - 1), PACKAGE);
+        } else if (!hasWildcard(rule, rule.length())) {
+            insert(rule, rule.endsWith(".") ? SUBTREE : EXACT);
+        } else {
+            patterns.add(globToPattern(rule));
+        }
+    }
+
+    private void insert(String path, int flag) {
+        int state = 0;
+        for (int i = 0; i < path.length(); i++) {
+            long key = key(state, normalize(path.charAt(i)));
+            int next = transitions.get(key);
+            if (next == 0) {
+                next = states++;
+                if (next == flags.length) {
+                    flags = Arrays.copyOf(flags, next * 2);
+                }
+                transitions.put(key, next);
+            }
+            state = next;
+        }
+        flags[state] |= flag;
+    }
+
+    private static boolean hasWildcard(String rule, int end) {
+        for (int i = 0; i < end; i++) {
+            char c = rule.charAt(i);
+            if (c == '*' || c == '?') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else if (c == '*') {
+                regex.append("[^.]*");
+            } else if (c == '?') {
+                regex.append("[^.]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static char normalize(char c) {
+        return c == '.' ? '/' : c;
+    }
+
+    private static long key(int state, char c) {
+        return ((long) (state + 1) << 16) | c;
+    }
+}
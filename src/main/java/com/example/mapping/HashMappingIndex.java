@@ -0,0 +1,162 @@
+package com.example.mapping;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import com.example.JEBJsonParser;
+import com.example.JEBJsonParser.MappingSink;
+import com.example.JEBJsonParser.Node;
+
+/**
+ * {@link MappingIndex} backed by hash maps built once from the parser output.
+ * When several entries share a key the first one wins, as the old list scans did.
+ */
+public final class HashMappingIndex implements MappingIndex {
+    private final Map<String, String> classes;
+    private final MemberTable methods;
+    private final MemberTable fields;
+
+    private HashMappingIndex(Map<String, String> classes, MemberTable methods, MemberTable fields) {
+        this.classes = classes;
+        this.methods = methods;
+        this.fields = fields;
+    }
+
+    /** Streams {@code jsonFile} straight into a new index without keeping the parsed nodes. */
+    public static HashMappingIndex load(File jsonFile) throws IOException {
+        return load(jsonFile, null);
+    }
+
+    /** Like {@link #load(File)}, keeping only members whose owner may be in {@code owners}. */
+    public static HashMappingIndex load(File jsonFile, ClassBloomFilter owners) throws IOException {
+        Builder builder = new Builder();
+        JEBJsonParser.parse(jsonFile, builder, owners);
+        return builder.build();
+    }
+
+    public static HashMappingIndex of(List<Node> classNodes, List<Node> methodNodes, List<Node> fieldNodes) {
+        Builder builder = new Builder();
+        if (classNodes != null) {
+            for (Node node : classNodes) {
+                builder.addClass(node);
+            }
+        }
+        if (methodNodes != null) {
+            for (Node node : methodNodes) {
+                builder.addMethod(node);
+            }
+        }
+        if (fieldNodes != null) {
+            for (Node node : fieldNodes) {
+                builder.addField(node);
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String findClass(String className) {
+        return classes.get(className);
+    }
+
+    @Override
+    public void forEachClass(BiConsumer<String, String> action) {
+        classes.forEach(action);
+    }
+
+    @Override
+    public String findMethod(String owner, String name, String descriptor) {
+        return methods.find(owner, name, descriptor);
+    }
+
+    @Override
+    public String findField(String owner, String name, String descriptor) {
+        return fields.find(owner, name, descriptor);
+    }
+
+    @Override
+    public int classCount() {
+        return classes.size();
+    }
+
+    @Override
+    public int methodCount() {
+        return methods.size;
+    }
+
+    @Override
+    public int fieldCount() {
+        return fields.size;
+    }
+
+    static String memberKey(String owner, String name) {
+        return owner + "." + name;
+    }
+
+    static String memberKey(String owner, String name, String descriptor) {
+        return owner + "." + name + ":" + descriptor;
+    }
+
+    public static final class Builder implements MappingSink {
+        private final Map<String, String> classes = new HashMap<>();
+        private final MemberTable methods = new MemberTable();
+        private final MemberTable fields = new MemberTable();
+
+        @Override
+        public void addClass(Node node) {
+            String newName = node.owner.isEmpty() ? node.newName : node.owner + "." + node.newName;
+            classes.putIfAbsent(node.desc, newName);
+        }
+
+        @Override
+        public void addMethod(Node node) {
+            methods.add(node);
+        }
+
+        @Override
+        public void addField(Node node) {
+            fields.add(node);
+        }
+
+        public HashMappingIndex build() {
+            return new HashMappingIndex(classes, methods, fields);
+        }
+    }
+
+    private static final class MemberTable {
+        private final Map<String, String> byDescriptor = new HashMap<>();
+        private final Map<String, String> byOwner = new HashMap<>();
+        private final Map<String, String> bySimpleName = new HashMap<>();
+        private int size;
+
+        void add(Node node) {
+            if (node.desc != null) {
+                byDescriptor.putIfAbsent(memberKey(node.owner, node.name, node.desc), node.newName);
+            }
+            byOwner.putIfAbsent(memberKey(node.owner, node.name), node.newName);
+            bySimpleName.putIfAbsent(node.name, node.newName);
+            size++;
+        }
+
+        String find(String owner, String name, String descriptor) {
+            if (owner != null) {
+                String newName;
+                if (descriptor != null) {
+                    newName = byDescriptor.get(memberKey(owner, name, descriptor));
+                    if (newName != null) {
+                        return newName;
+                    }
+                }
+                newName = byOwner.get(memberKey(owner, name));
+                if (newName != null) {
+                    return newName;
+                }
+            }
+            return bySimpleName.get(name);
+        }
+    }
+}
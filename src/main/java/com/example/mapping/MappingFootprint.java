@@ -0,0 +1,172 @@
+package com.example.mapping;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.BitSet;
+
+import org.objectweb.asm.commons.Remapper;
+
+import com.example.analyzer.ConstantPoolScanner;
+
+/**
+ * The renames a class picks up, worked out from its constant pool and member
+ * declarations by asking the same {@link Remapper} the transform uses. Only
+ * symbols whose answer differs from the original are counted and hashed.
+ */
+public final class MappingFootprint implements ConstantPoolScanner.Visitor {
+    private static final byte[] SEPARATOR = {0};
+
+    private final Remapper remapper;
+    private final MessageDigest digest;
+    private final BitSet renamedItems = new BitSet();
+    private int renamedCount;
+
+    private MappingFootprint(Remapper remapper, boolean hashed) {
+        this.remapper = remapper;
+        this.digest = hashed ? sha256() : null;
+    }
+
+    /** Counts the renames in {@code classBytes} without hashing them. */
+    public static MappingFootprint counted(byte[] classBytes, Remapper remapper) {
+        MappingFootprint footprint = new MappingFootprint(remapper, false);
+        ConstantPoolScanner.scan(classBytes, footprint);
+        return footprint;
+    }
+
+    /** Counts the renames in {@code classBytes} and hashes them. */
+    public static MappingFootprint hashed(byte[] classBytes, Remapper remapper) {
+        MappingFootprint footprint = new MappingFootprint(remapper, true);
+        ConstantPoolScanner.scan(classBytes, footprint);
+        return footprint;
+    }
+
+    /** Number of constant pool symbols and declarations the remapper would change. */
+    public int getRenamedCount() {
+        return renamedCount;
+    }
+
+    /** Constant pool indexes of the Class, Fieldref, Methodref and Utf8 entries the remapper would change. */
+    public BitSet getRenamedItems() {
+        return renamedItems;
+    }
+
+    public byte[] digest() {
+        return digest.digest();
+    }
+
+    @Override
+    public void visitClass(int index, String internalName) {
+        String mapped = internalName.charAt(0) == '['
+                ? remapper.mapDesc(internalName)
+                : remapper.map(internalName);
+        record(index, 'C', internalName, mapped);
+    }
+
+    @Override
+    public void visitFieldRef(int index, String owner, String name, String descriptor) {
+        record(index, 'F', owner, name, descriptor, remapper.mapFieldName(owner, name, descriptor));
+    }
+
+    @Override
+    public void visitMethodRef(int index, String owner, String name, String descriptor) {
+        record(index, 'M', owner, name, descriptor, remapper.mapMethodName(owner, name, descriptor));
+    }
+
+    @Override
+    public void visitDeclaredField(String owner, String name, String descriptor) {
+        record(-1, 'F', owner, name, descriptor, remapper.mapFieldName(owner, name, descriptor));
+    }
+
+    @Override
+    public void visitDeclaredMethod(String owner, String name, String descriptor) {
+        record(-1, 'M', owner, name, descriptor, remapper.mapMethodName(owner, name, descriptor));
+    }
+
+    @Override
+    public void visitUtf8(int index, String value) {
+        Object mapped = remapper.mapValue(value);
+        if (!value.equals(mapped)) {
+            record(index, 'S', value, String.valueOf(mapped));
+        }
+        if (value.isEmpty()) {
+            return;
+        }
+        char first = value.charAt(0);
+        if (first == '(' || first == '[' || first == 'L' || first == '<') {
+            visitTypeNames(index, value);
+        }
+    }
+
+    /** Maps every {@code Lname;} or {@code Lname<} reference inside a descriptor or signature. */
+    private void visitTypeNames(int index, String value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != 'L' || (i > 0 && !isTypeBoundary(value.charAt(i - 1)))) {
+                continue;
+            }
+            int end = i + 1;
+            while (end < length) {
+                char c = value.charAt(end);
+                if (c == ';' || c == '<' || c == '.') {
+                    break;
+                }
+                end++;
+            }
+            if (end == length || end == i + 1) {
+                return;
+            }
+            String internalName = value.substring(i + 1, end);
+            record(index, 'T', internalName, remapper.map(internalName));
+            i = end;
+        }
+    }
+
+    private static boolean isTypeBoundary(char c) {
+        return c == '(' || c == ')' || c == '[' || c == ';' || c == '<' || c == '>'
+                || c == ':' || c == '+' || c == '-' || c == '^';
+    }
+
+    private void record(int index, char kind, String original, String mapped) {
+        if (mapped == null || mapped.equals(original)) {
+            return;
+        }
+        renamedCount++;
+        renamedItems.set(index);
+        if (digest != null) {
+            digest.update((byte) kind);
+            update(original);
+            update(mapped);
+        }
+    }
+
+    private void record(int index, char kind, String owner, String name, String descriptor, String mapped) {
+        if (mapped == null || mapped.equals(name)) {
+            return;
+        }
+        renamedCount++;
+        if (index >= 0) {
+            renamedItems.set(index);
+        }
+        if (digest != null) {
+            digest.update((byte) kind);
+            update(owner);
+            update(name);
+            update(descriptor);
+            update(mapped);
+        }
+    }
+
+    private void update(String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update(SEPARATOR);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.mapping;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Read-only lookup of JEB renames. Class names are dotted ({@code pkg.Cls}),
+ * member owners likewise; a {@code null} descriptor or owner widens the match.
+ */
+public interface MappingIndex {
+
+    /** Returns the new fully qualified name for {@code className}, or {@code null}. */
+    String findClass(String className);
+
+    /**
+     * Resolves by owner + name + descriptor, then owner + name, then simple name.
+     * Returns the new method name or {@code null}.
+     */
+    String findMethod(String owner, String name, String descriptor);
+
+    /**
+     * Resolves by owner + name + descriptor, then owner + name, then simple name.
+     * Returns the new field name or {@code null}.
+     */
+    String findField(String owner, String name, String descriptor);
+
+    /** Calls {@code action} with the old and new fully qualified name of every mapped class. */
+    void forEachClass(BiConsumer<String, String> action);
+
+    int classCount();
+
+    int methodCount();
+
+    int fieldCount();
+
+    default boolean isEmpty() {
+        return classCount() == 0 && methodCount() == 0 && fieldCount() == 0;
+    }
+}
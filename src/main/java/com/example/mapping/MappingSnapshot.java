@@ -0,0 +1,119 @@
+package com.example.mapping;
+
+import java.util.Map;
+
+import com.example.symbol.LongIntHashMap;
+import com.example.symbol.SymbolTable;
+
+/**
+ * Read-only view of the member and string renames decided during analysis,
+ * shared by every remapper of a run. Member renames are keyed by the packed
+ * {@link SymbolTable} key of {@code owner.name:descriptor} with internal owner
+ * names, so a lookup hashes the three parts and allocates nothing. Names
+ * resolved later, at transform time, go into concurrent overlays so the frozen
+ * maps are never mutated; the overlays are keyed the same way, in symbol tables
+ * of their own striped by owner.
+ */
+public final class MappingSnapshot {
+    private final SymbolTable symbols;
+    private final LongIntHashMap fieldMappings;
+    private final LongIntHashMap methodMappings;
+    private final Map<String, String> stringMappings;
+    private final Overlay fieldOverlay = new Overlay();
+    private final Overlay methodOverlay = new Overlay();
+
+    /**
+     * Takes ownership of {@code symbols} and the member maps, whose values are
+     * symbol ids of the new names; the caller must not modify them afterwards.
+     */
+    public MappingSnapshot(SymbolTable symbols, LongIntHashMap fieldMappings, LongIntHashMap methodMappings,
+                           Map<String, String> stringMappings) {
+        this.symbols = symbols;
+        this.fieldMappings = fieldMappings;
+        this.methodMappings = methodMappings;
+        this.stringMappings = Map.copyOf(stringMappings);
+    }
+
+    /**
+     * Looks up {@code owner.name:descriptor}. On a miss, {@code resolver} is asked
+     * once and its answer kept in the overlay; a {@code null} resolver or answer
+     * keeps the original name.
+     */
+    public String mapField(String owner, String name, String descriptor, MemberResolver resolver) {
+        return lookup(fieldMappings, fieldOverlay, owner, name, descriptor, resolver);
+    }
+
+    /** Same as {@link #mapField} for methods. */
+    public String mapMethod(String owner, String name, String descriptor, MemberResolver resolver) {
+        return lookup(methodMappings, methodOverlay, owner, name, descriptor, resolver);
+    }
+
+    public String mapString(String value) {
+        return stringMappings.get(value);
+    }
+
+    private String lookup(LongIntHashMap frozen, Overlay overlay,
+                          String owner, String name, String descriptor, MemberResolver resolver) {
+        long member = symbols.findMember(owner, name, descriptor);
+        if (member != SymbolTable.ABSENT) {
+            int newNameId = frozen.get(member);
+            if (newNameId != 0) {
+                return symbols.symbol(newNameId);
+            }
+        }
+        if (resolver == null) {
+            return name;
+        }
+        Overlay.Stripe stripe = overlay.stripe(owner);
+        String newName = stripe.get(owner, name, descriptor);
+        if (newName != null) {
+            return newName;
+        }
+        newName = resolver.resolve(owner, name, descriptor);
+        if (newName == null) {
+            return name;
+        }
+        return stripe.putIfAbsent(owner, name, descriptor, newName);
+    }
+
+    /** Names resolved while rewriting; owners hash to stripes so workers rarely wait on each other. */
+    private static final class Overlay {
+        private static final int STRIPES = 16;
+
+        private final Stripe[] stripes = new Stripe[STRIPES];
+
+        Overlay() {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+
+        Stripe stripe(String owner) {
+            int hash = owner.hashCode();
+            return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        }
+
+        static final class Stripe {
+            private final SymbolTable symbols = new SymbolTable();
+            private final LongIntHashMap names = new LongIntHashMap();
+
+            synchronized String get(String owner, String name, String descriptor) {
+                long member = symbols.findMember(owner, name, descriptor);
+                int newNameId = member == SymbolTable.ABSENT ? 0 : names.get(member);
+                return newNameId == 0 ? null : symbols.symbol(newNameId);
+            }
+
+            /** Keeps the first name stored for the member and returns it. */
+            synchronized String putIfAbsent(String owner, String name, String descriptor, String newName) {
+                long member = symbols.internMember(owner, name, descriptor);
+                return symbols.symbol(names.putIfAbsent(member, symbols.intern(newName)));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface MemberResolver {
+        /** Returns the new name for a member missing from the snapshot, or {@code null} to keep it uncached. */
+        String resolve(String owner, String name, String descriptor);
+    }
+}
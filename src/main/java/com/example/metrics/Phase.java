@@ -0,0 +1,23 @@
+package com.example.metrics;
+
+/** The stages of a rename run that {@link RunMetrics} times separately. */
+public enum Phase {
+    PARSE("parse"),
+    INGEST("ingest"),
+    ANALYZE("analyze"),
+    /** Everything after analysis; transform, compress and write are timed inside it per entry. */
+    REWRITE("rewrite"),
+    TRANSFORM("transform"),
+    COMPRESS("compress"),
+    WRITE("write");
+
+    private final String label;
+
+    Phase(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one phase of a rename run. A top-level phase spans its own
+ * duration; a per-entry phase (transform, compress, write) is committed once,
+ * when its sections are flushed, with their time summed over threads.
+ */
+@Name("com.example.rename.Phase")
+@Label("Rename Phase")
+@Category("Jar Rename")
+@Description("Time spent in one phase of a jar rename run")
+@StackTrace(false)
+class PhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Busy Time")
+    @Description("Elapsed time in the phase, summed over threads")
+    @Timespan
+    long busyTime;
+
+    @Label("CPU Time")
+    @Timespan
+    long cpuTime;
+
+    @Label("Threads")
+    int threads;
+}
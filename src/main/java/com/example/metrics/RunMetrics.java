@@ -0,0 +1,304 @@
+package com.example.metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time per {@link Phase}, plus the counters of a rename run. Safe to update
+ * from transform workers.
+ * <p>
+ * Top-level phases are timed once with {@link #time(Phase)}: they record wall
+ * and CPU time and are committed as JFR events. The per-entry work inside the
+ * rewrite phase (transform, compress, write) is timed with {@link #startSection()}
+ * and {@link #endSection(Phase, long)}, which add to counters of the current
+ * thread. Each thread reads its CPU time about once a millisecond of sections,
+ * not per entry, and splits it over the phases it ran in proportion to their
+ * time. {@link #flushSections()} publishes the counters and commits one JFR
+ * event per phase; their busy time is summed over threads and can exceed the
+ * wall time of the rewrite.
+ */
+public class RunMetrics {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final long SLOW_CLASS_NANOS = 10_000_000L;
+    private static final long CPU_SAMPLE_NANOS = 1_000_000L;
+    private static final Phase[] PHASES = Phase.values();
+
+    private final Map<Phase, LongAdder> wallNanos = new EnumMap<>(Phase.class);
+    private final Map<Phase, LongAdder> busyNanos = new EnumMap<>(Phase.class);
+    private final Map<Phase, LongAdder> cpuNanos = new EnumMap<>(Phase.class);
+    private final boolean cpuTimeSupported;
+    private final ThreadLocal<Sections> sections = ThreadLocal.withInitial(this::newSections);
+    private final Queue<Sections> allSections = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder classesRewritten = new LongAdder();
+    private final LongAdder classesUnchanged = new LongAdder();
+    private final LongAdder mappingHits = new LongAdder();
+    private final LongAdder mappingMisses = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    public RunMetrics() {
+        for (Phase phase : Phase.values()) {
+            wallNanos.put(phase, new LongAdder());
+            busyNanos.put(phase, new LongAdder());
+            cpuNanos.put(phase, new LongAdder());
+        }
+        cpuTimeSupported = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+    }
+
+    /** Starts timing top-level {@code phase} on the current thread until the returned span is closed. */
+    public Span time(Phase phase) {
+        return new Span(phase);
+    }
+
+    /** Starts a per-entry section; pass the result to {@link #endSection}. */
+    public long startSection() {
+        sections.get();
+        return System.nanoTime();
+    }
+
+    /** Adds the time since {@code start} to the current thread's counters for {@code phase}. */
+    public void endSection(Phase phase, long start) {
+        sections.get().add(phase, start, System.nanoTime());
+    }
+
+    /**
+     * Publishes what every thread timed in sections since the last flush and
+     * commits one {@link PhaseEvent} per phase. Call it once the workers are
+     * done but still alive, so the CPU time since their last reading is counted.
+     */
+    public void flushSections() {
+        long[] busy = new long[PHASES.length];
+        long[] cpu = new long[PHASES.length];
+        int[] threads = new int[PHASES.length];
+        for (Sections counters : allSections) {
+            counters.flush(busy, cpu, threads);
+        }
+        for (Phase phase : PHASES) {
+            int i = phase.ordinal();
+            if (busy[i] == 0) {
+                continue;
+            }
+            busyNanos.get(phase).add(busy[i]);
+            cpuNanos.get(phase).add(cpu[i]);
+            PhaseEvent event = new PhaseEvent();
+            if (event.isEnabled()) {
+                event.phase = phase.getLabel();
+                event.busyTime = busy[i];
+                event.cpuTime = cpu[i];
+                event.threads = threads[i];
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Reports a class transform started at {@code start} to JFR if it took
+     * longer than 10 ms. Faster ones cost one clock read.
+     */
+    public void classTransformed(String className, int inputBytes, long start) {
+        long elapsed = System.nanoTime() - start;
+        if (elapsed >= SLOW_CLASS_NANOS) {
+            SlowClassEvent event = new SlowClassEvent();
+            if (event.isEnabled()) {
+                event.className = className;
+                event.inputBytes = inputBytes;
+                event.transformTime = elapsed;
+                event.commit();
+            }
+        }
+    }
+
+    public void classRewritten() {
+        classesRewritten.increment();
+    }
+
+    public void classUnchanged() {
+        classesUnchanged.increment();
+    }
+
+    public void mappingLookup(boolean hit) {
+        (hit ? mappingHits : mappingMisses).increment();
+    }
+
+    public void bytesIn(long count) {
+        if (count > 0) {
+            bytesIn.add(count);
+        }
+    }
+
+    public void bytesOut(long count) {
+        if (count > 0) {
+            bytesOut.add(count);
+        }
+    }
+
+    /** Wall time of a top-level phase; {@code 0} for the per-entry phases. */
+    public long getWallNanos(Phase phase) {
+        return wallNanos.get(phase).sum();
+    }
+
+    /** Elapsed time in {@code phase} summed over every thread that worked on it. */
+    public long getBusyNanos(Phase phase) {
+        return busyNanos.get(phase).sum();
+    }
+
+    public long getCpuNanos(Phase phase) {
+        return cpuNanos.get(phase).sum();
+    }
+
+    public long getClassesRewritten() {
+        return classesRewritten.sum();
+    }
+
+    public long getClassesUnchanged() {
+        return classesUnchanged.sum();
+    }
+
+    public long getMappingHits() {
+        return mappingHits.sum();
+    }
+
+    public long getMappingMisses() {
+        return mappingMisses.sum();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    /** Prints the report in one write, so summaries of concurrent runs do not interleave. */
+    public void printSummary(PrintStream out, String title) {
+        StringBuilder report = new StringBuilder();
+        report.append(title).append(System.lineSeparator());
+        report.append(String.format("  %-10s %10s %10s %10s%n", "phase", "wall ms", "busy ms", "cpu ms"));
+        for (Phase phase : PHASES) {
+            long wall = getWallNanos(phase);
+            long busy = getBusyNanos(phase);
+            if (wall == 0 && busy == 0) {
+                continue;
+            }
+            report.append(String.format("  %-10s %10s %10d %10s%n", phase.getLabel(),
+                    wall != 0 ? String.valueOf(wall / 1_000_000) : "-", busy / 1_000_000,
+                    cpuTimeSupported ? String.valueOf(getCpuNanos(phase) / 1_000_000) : "n/a"));
+        }
+        report.append("  Classes: ").append(getClassesRewritten()).append(" rewritten, ")
+                .append(getClassesUnchanged()).append(" copied unchanged").append(System.lineSeparator());
+        report.append("  Mapping lookups: ").append(getMappingHits()).append(" hits, ")
+                .append(getMappingMisses()).append(" misses").append(System.lineSeparator());
+        report.append("  Entry bytes: ").append(getBytesIn()).append(" in, ")
+                .append(getBytesOut()).append(" out");
+        out.println(report);
+    }
+
+    private long currentCpuNanos() {
+        return cpuTimeSupported ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    private Sections newSections() {
+        Sections counters = new Sections();
+        allSections.add(counters);
+        return counters;
+    }
+
+    /** A top-level phase, timed on the thread that runs it. */
+    public final class Span implements AutoCloseable {
+        private final Phase phase;
+        private final long startWall;
+        private final long startCpu;
+        private final PhaseEvent event = new PhaseEvent();
+
+        private Span(Phase phase) {
+            this.phase = phase;
+            this.startCpu = currentCpuNanos();
+            this.startWall = System.nanoTime();
+            event.begin();
+        }
+
+        @Override
+        public void close() {
+            event.end();
+            long elapsed = System.nanoTime() - startWall;
+            long cpu = currentCpuNanos() - startCpu;
+            wallNanos.get(phase).add(elapsed);
+            busyNanos.get(phase).add(elapsed);
+            cpuNanos.get(phase).add(cpu);
+            if (event.shouldCommit()) {
+                event.phase = phase.getLabel();
+                event.busyTime = elapsed;
+                event.cpuTime = cpu;
+                event.threads = 1;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Section counters of one thread. Only that thread adds to them; the lock is
+     * uncontended except while a flush reads them.
+     */
+    private final class Sections {
+        private final Thread thread = Thread.currentThread();
+        private final long[] busy = new long[PHASES.length];
+        private final long[] cpu = new long[PHASES.length];
+        // Section time since the last CPU reading, which is split in these proportions.
+        private final long[] sinceSample = new long[PHASES.length];
+        private long lastCpu = currentCpuNanos();
+        private long lastSample = System.nanoTime();
+
+        synchronized void add(Phase phase, long start, long end) {
+            busy[phase.ordinal()] += end - start;
+            sinceSample[phase.ordinal()] += end - start;
+            if (cpuTimeSupported && end - lastSample >= CPU_SAMPLE_NANOS) {
+                sample(THREADS.getCurrentThreadCpuTime(), end);
+            }
+        }
+
+        /** Adds the counters since the last flush to the totals and clears them. */
+        synchronized void flush(long[] busyTotals, long[] cpuTotals, int[] threads) {
+            if (cpuTimeSupported) {
+                // -1 once the thread has ended; its time since the last reading is then lost.
+                long now = thread == Thread.currentThread() ? THREADS.getCurrentThreadCpuTime()
+                        : THREADS.getThreadCpuTime(thread.getId());
+                if (now >= 0) {
+                    sample(now, System.nanoTime());
+                }
+            }
+            for (int i = 0; i < busy.length; i++) {
+                if (busy[i] != 0) {
+                    busyTotals[i] += busy[i];
+                    cpuTotals[i] += cpu[i];
+                    threads[i]++;
+                    busy[i] = 0;
+                    cpu[i] = 0;
+                }
+            }
+        }
+
+        private void sample(long cpuNow, long now) {
+            long total = 0;
+            for (long elapsed : sinceSample) {
+                total += elapsed;
+            }
+            if (total > 0) {
+                double cpuPerNano = (double) (cpuNow - lastCpu) / total;
+                for (int i = 0; i < sinceSample.length; i++) {
+                    cpu[i] += (long) (sinceSample[i] * cpuPerNano);
+                    sinceSample[i] = 0;
+                }
+            }
+            lastCpu = cpuNow;
+            lastSample = now;
+        }
+    }
+}
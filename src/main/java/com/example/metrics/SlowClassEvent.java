@@ -0,0 +1,32 @@
+package com.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for a class whose transform took longer than 10 ms. It is created
+ * only after the fact, so the time is a field rather than the event's duration.
+ */
+@Name("com.example.rename.SlowClass")
+@Label("Slow Class Transform")
+@Category("Jar Rename")
+@Description("A single class transform that exceeded the threshold")
+@StackTrace(false)
+class SlowClassEvent extends Event {
+    @Label("Class")
+    String className;
+
+    @Label("Input Size")
+    @DataAmount
+    long inputBytes;
+
+    @Label("Transform Time")
+    @Timespan
+    long transformTime;
+}
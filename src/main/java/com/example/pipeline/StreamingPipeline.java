@@ -0,0 +1,170 @@
+package com.example.pipeline;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Reads, transforms and writes a numbered sequence of items with bounded memory.
+ * A reader thread reads items in order, transform workers process them in any
+ * order and the calling thread writes them back in the original order.
+ * <p>
+ * The reader blocks while the items it has read but the writer has not yet
+ * written hold more than {@code maxInFlightBytes}, and while the ordered queue
+ * is full, so heap use follows the cap rather than the input size. An item is
+ * charged for its input when it is read and for its result, as weighed by the
+ * caller, once it is transformed; both are released when it is written. A
+ * single item larger than the cap is still let through on its own.
+ */
+public final class StreamingPipeline {
+    private static final int QUEUE_PER_WORKER = 16;
+
+    private final int workers;
+    private final long maxInFlightBytes;
+
+    public StreamingPipeline(int workers, long maxInFlightBytes) {
+        this.workers = Math.max(1, workers);
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    /** Returns the bytes of item {@code index}, or {@code null} for an item that is passed through untransformed. */
+    @FunctionalInterface
+    public interface Reader {
+        byte[] read(int index) throws IOException;
+    }
+
+    /** Returns the result for item {@code index}, or {@code null} to keep its input. */
+    @FunctionalInterface
+    public interface Transformer<R> {
+        R transform(int index, byte[] input) throws IOException;
+    }
+
+    /** Returns the heap bytes held by a non-null transform result until it is written. */
+    @FunctionalInterface
+    public interface Weigher<R> {
+        long weigh(R output);
+    }
+
+    /** Writes item {@code index}; {@code output} is {@code null} when it was not transformed. */
+    @FunctionalInterface
+    public interface Writer<R> {
+        void write(int index, byte[] input, R output) throws IOException;
+    }
+
+    public <R> void run(int count, Reader reader, Transformer<R> transformer, Weigher<? super R> weigher,
+                        Writer<R> writer) throws IOException {
+        ByteBudget budget = new ByteBudget(maxInFlightBytes);
+        BlockingQueue<Item<R>> ordered = new ArrayBlockingQueue<>(workers * QUEUE_PER_WORKER);
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        Thread readerThread = new Thread(() -> read(count, reader, transformer, weigher, budget, ordered, pool), "jar-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+        try {
+            for (int i = 0; i < count; i++) {
+                Item<R> item = ordered.take();
+                R output;
+                try {
+                    output = item.result.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("Error processing item " + item.index + ": " + cause.getMessage(), cause);
+                }
+                writer.write(item.index, item.input, output);
+                budget.release(item.weight + item.outputWeight);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing");
+        } finally {
+            readerThread.interrupt();
+            pool.shutdownNow();
+        }
+    }
+
+    private static <R> void read(int count, Reader reader, Transformer<R> transformer, Weigher<? super R> weigher,
+                                 ByteBudget budget, BlockingQueue<Item<R>> ordered, ForkJoinPool pool) {
+        try {
+            for (int i = 0; i < count; i++) {
+                Item<R> item;
+                try {
+                    item = new Item<>(i, reader.read(i));
+                } catch (IOException | RuntimeException e) {
+                    item = new Item<>(i, null);
+                    item.result.completeExceptionally(e);
+                    ordered.put(item);
+                    return;
+                }
+                budget.acquire(item.weight);
+                ordered.put(item);
+                if (item.input == null) {
+                    item.result.complete(null);
+                } else {
+                    Item<R> task = item;
+                    pool.execute(() -> {
+                        try {
+                            R output = transformer.transform(task.index, task.input);
+                            if (output != null) {
+                                // Never blocks: a worker waiting here could hold up the writer.
+                                task.outputWeight = weigher.weigh(output);
+                                budget.charge(task.outputWeight);
+                            }
+                            task.result.complete(output);
+                        } catch (Throwable t) {
+                            task.result.completeExceptionally(t);
+                        }
+                    });
+                }
+            }
+        } catch (InterruptedException e) {
+            // The writer stopped early; nothing is waiting for the remaining items.
+        }
+    }
+
+    private static final class Item<R> {
+        final int index;
+        final byte[] input;
+        final long weight;
+        final CompletableFuture<R> result = new CompletableFuture<>();
+        // Set before result completes, so the writer sees it after get().
+        long outputWeight;
+
+        Item(int index, byte[] input) {
+            this.index = index;
+            this.input = input;
+            this.weight = input != null ? input.length : 0;
+        }
+    }
+
+    private static final class ByteBudget {
+        private final long capacity;
+        private long used;
+
+        ByteBudget(long capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void acquire(long bytes) throws InterruptedException {
+            while (used > 0 && used + bytes > capacity) {
+                wait();
+            }
+            used += bytes;
+        }
+
+        /** Adds bytes without waiting; later acquires wait until they are released. */
+        synchronized void charge(long bytes) {
+            used += bytes;
+        }
+
+        synchronized void release(long bytes) {
+            used -= bytes;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.pipeline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+
+/**
+ * Append-only temporary file of the strings found in each class, so analysis
+ * can keep them off the heap between ingestion and string analysis. Records
+ * are replayed in the order they were appended; the file is deleted on close.
+ */
+public final class StringSpill implements Closeable {
+    private final File file;
+    private DataOutputStream out;
+
+    public StringSpill(File directory) throws IOException {
+        directory.mkdirs();
+        this.file = Files.createTempFile(directory.toPath(), "strings-", ".spill").toFile();
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+    }
+
+    /** Appends the strings of one class. Constant pool strings always fit {@code writeUTF}. */
+    public void append(String className, Collection<String> strings) throws IOException {
+        out.writeUTF(className);
+        out.writeInt(strings.size());
+        for (String value : strings) {
+            out.writeUTF(value);
+        }
+    }
+
+    /** Finishes writing and calls {@code visitor} for every string, class by class. */
+    public void replay(Visitor visitor) throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            while (true) {
+                String className;
+                try {
+                    className = in.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    visitor.visit(className, in.readUTF());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(String className, String value);
+    }
+}
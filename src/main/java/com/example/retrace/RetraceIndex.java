@@ -0,0 +1,95 @@
+package com.example.retrace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import com.example.JEBJsonParser;
+import com.example.JEBJsonParser.Node;
+
+/**
+ * Class and method renames of a JEB mapping, looked up in either direction.
+ * Classes are dotted; methods are keyed by their qualified name
+ * ({@code pkg.Cls.method}), as they appear in a stack frame. Overloads renamed
+ * differently keep the first mapping, as {@link com.example.mapping.HashMappingIndex} does.
+ * <p>
+ * Load the mapping a run writes with {@link com.example.RenamerOptions#setWriteMapping}:
+ * it names every renamed declaration. The JEB export the run read misses
+ * methods renamed with their override family, suffixed names and names found
+ * by simple name only.
+ */
+public final class RetraceIndex {
+    public enum Direction {
+        /** From the names of the input jar to the renamed ones. */
+        OLD_TO_NEW,
+        /** From renamed names back to those of the input jar. */
+        NEW_TO_OLD
+    }
+
+    private final Map<String, String> oldToNewClasses = new HashMap<>();
+    private final Map<String, String> newToOldClasses = new HashMap<>();
+    private final Map<String, String> oldToNewMethods = new HashMap<>();
+    private final Map<String, String> newToOldMethods = new HashMap<>();
+
+    private RetraceIndex() {
+    }
+
+    /** Streams a JEB export into an index; fields are skipped, they never appear in frames. */
+    public static RetraceIndex load(File mappingFile) throws IOException {
+        RetraceIndex index = new RetraceIndex();
+        Map<String, Map<String, String>> methodsByOwner = new HashMap<>();
+        JEBJsonParser.parse(mappingFile, new JEBJsonParser.MappingSink() {
+            @Override
+            public void addClass(Node node) {
+                String newName = node.owner.isEmpty() ? node.newName : node.owner + "." + node.newName;
+                if (index.oldToNewClasses.putIfAbsent(node.desc, newName) == null) {
+                    index.newToOldClasses.putIfAbsent(newName, node.desc);
+                }
+            }
+
+            @Override
+            public void addMethod(Node node) {
+                methodsByOwner.computeIfAbsent(node.owner, owner -> new HashMap<>()).putIfAbsent(node.name, node.newName);
+            }
+
+            @Override
+            public void addField(Node node) {
+            }
+        });
+
+        // Reverse keys need the owner's new name, known once every class is read.
+        methodsByOwner.forEach((owner, methods) -> {
+            String newOwner = index.oldToNewClasses.getOrDefault(owner, owner);
+            methods.forEach((name, newName) -> {
+                index.oldToNewMethods.put(owner + "." + name, newName);
+                index.newToOldMethods.putIfAbsent(newOwner + "." + newName, name);
+            });
+        });
+        return index;
+    }
+
+    /** Returns the other name of a dotted class, or {@code null} if it is not renamed. */
+    public String mapClass(String className, Direction direction) {
+        return (direction == Direction.OLD_TO_NEW ? oldToNewClasses : newToOldClasses).get(className);
+    }
+
+    /** Returns the other simple name of a method given as {@code pkg.Cls.method}, or {@code null}. */
+    public String mapMethod(String qualifiedMethod, Direction direction) {
+        return (direction == Direction.OLD_TO_NEW ? oldToNewMethods : newToOldMethods).get(qualifiedMethod);
+    }
+
+    /** Calls {@code action} with each class name and the name it maps to in {@code direction}. */
+    public void forEachClass(Direction direction, BiConsumer<String, String> action) {
+        (direction == Direction.OLD_TO_NEW ? oldToNewClasses : newToOldClasses).forEach(action);
+    }
+
+    public int classCount() {
+        return oldToNewClasses.size();
+    }
+
+    public int methodCount() {
+        return oldToNewMethods.size();
+    }
+}
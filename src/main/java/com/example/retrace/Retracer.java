@@ -0,0 +1,217 @@
+package com.example.retrace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.example.retrace.RetraceIndex.Direction;
+import com.example.transform.StringRewriter;
+
+/**
+ * Translates class and method names in stack traces and log text. A frame
+ * ({@code at pkg.Cls.method(Cls.java:12)}, optionally with a module prefix)
+ * gets both its class and its method mapped; everywhere else, such as in
+ * {@code Caused by:} lines and messages, whole class names are replaced.
+ * <p>
+ * Streams are cut into chunks of about a megabyte at line ends and the chunks
+ * are translated on {@code workers} threads, then written back in order.
+ * Instances are immutable and may be shared.
+ */
+public final class Retracer {
+    private static final int CHUNK = 1 << 20;
+    private static final int CHUNKS_PER_WORKER = 2;
+
+    private final RetraceIndex index;
+    private final Direction direction;
+    private final StringRewriter classNames = new StringRewriter();
+    private final int workers;
+
+    public Retracer(RetraceIndex index, Direction direction, int workers) {
+        this.index = index;
+        this.direction = direction;
+        this.workers = Math.max(1, workers);
+        index.forEachClass(direction, classNames::addClass);
+    }
+
+    /** Translates any number of lines. Returns {@code text} itself when nothing is renamed. */
+    public String retrace(String text) {
+        StringBuilder out = null;
+        int length = text.length();
+        int runStart = 0;
+        int position = 0;
+        while (position < length) {
+            int lineEnd = text.indexOf('\n', position);
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+            int frameStart = frameStart(text, position, lineEnd);
+            if (frameStart >= 0) {
+                int frameEnd = text.indexOf('(', frameStart);
+                String frame = retraceFrame(text, frameStart, frameEnd);
+                if (frame != null) {
+                    if (out == null) {
+                        out = new StringBuilder(length + 64);
+                    }
+                    out.append(classNames.rewrite(text.substring(runStart, frameStart))).append(frame);
+                    runStart = frameEnd;
+                }
+            }
+            position = lineEnd + 1;
+        }
+        if (out == null) {
+            return classNames.rewrite(text);
+        }
+        out.append(classNames.rewrite(text.substring(runStart)));
+        return out.toString();
+    }
+
+    public void retrace(File input, File output) throws IOException {
+        try (InputStream in = new FileInputStream(input);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+            retrace(in, out);
+        }
+    }
+
+    /**
+     * Translates a UTF-8 stream. Chunks that are not valid UTF-8 are read as
+     * ISO-8859-1 instead, so their bytes are passed through unchanged.
+     */
+    public void retrace(InputStream in, OutputStream out) throws IOException {
+        if (!(in instanceof BufferedInputStream)) {
+            in = new BufferedInputStream(in, CHUNK);
+        }
+        ForkJoinPool pool = workers > 1 ? new ForkJoinPool(workers) : null;
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        try {
+            byte[] carry = new byte[0];
+            while (true) {
+                byte[] buffer = Arrays.copyOf(carry, carry.length + CHUNK);
+                int length = carry.length + in.readNBytes(buffer, carry.length, CHUNK);
+                if (length == 0) {
+                    break;
+                }
+                int cut = length < buffer.length ? length : chunkEnd(buffer, length);
+                carry = Arrays.copyOfRange(buffer, cut, length);
+                byte[] chunk = Arrays.copyOf(buffer, cut);
+                if (pool == null) {
+                    out.write(retraceChunk(chunk));
+                    continue;
+                }
+                pending.add(pool.submit(() -> retraceChunk(chunk)));
+                if (pending.size() >= workers * CHUNKS_PER_WORKER) {
+                    out.write(take(pending));
+                }
+            }
+            while (!pending.isEmpty()) {
+                out.write(take(pending));
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+        out.flush();
+    }
+
+    private byte[] retraceChunk(byte[] chunk) {
+        String text;
+        boolean utf8 = true;
+        try {
+            text = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(chunk)).toString();
+        } catch (CharacterCodingException e) {
+            text = new String(chunk, StandardCharsets.ISO_8859_1);
+            utf8 = false;
+        }
+        String retraced = retrace(text);
+        if (retraced == text) {
+            return chunk;
+        }
+        return retraced.getBytes(utf8 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] take(Deque<Future<byte[]>> pending) throws IOException {
+        try {
+            return pending.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while retracing");
+        } catch (ExecutionException e) {
+            throw new IOException("Error retracing: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /** Cuts after the last line end, or, in a chunk without one, before a UTF-8 sequence. */
+    private static int chunkEnd(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == '\n') {
+                return i + 1;
+            }
+        }
+        int cut = length;
+        while (cut > 1 && (buffer[cut - 1] & 0xC0) == 0x80) {
+            cut--;
+        }
+        if ((buffer[cut - 1] & 0xC0) == 0xC0) {
+            cut--;
+        }
+        return cut > 0 ? cut : length;
+    }
+
+    /** Index of the qualified name of a frame line, or {@code -1} if the line is no frame. */
+    private static int frameStart(String text, int lineStart, int lineEnd) {
+        int i = lineStart;
+        while (i < lineEnd && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) {
+            i++;
+        }
+        if (!text.startsWith("at ", i)) {
+            return -1;
+        }
+        int start = i + 3;
+        for (int j = start; j < lineEnd; j++) {
+            char c = text.charAt(j);
+            if (c == '(') {
+                return j > start ? start : -1;
+            }
+            if (Character.isWhitespace(c)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the translated {@code [module/]pkg.Cls.method}, or {@code null} if neither part is renamed. */
+    private String retraceFrame(String text, int start, int end) {
+        int nameStart = text.lastIndexOf('/', end - 1) + 1;
+        if (nameStart < start) {
+            nameStart = start;
+        }
+        int lastDot = text.lastIndexOf('.', end - 1);
+        if (lastDot <= nameStart) {
+            return null;
+        }
+        String className = text.substring(nameStart, lastDot);
+        String newClass = index.mapClass(className, direction);
+        String newMethod = index.mapMethod(text.substring(nameStart, end), direction);
+        if (newClass == null && newMethod == null) {
+            return null;
+        }
+        return text.substring(start, nameStart)
+                + (newClass != null ? newClass : className) + '.'
+                + (newMethod != null ? newMethod : text.substring(lastDot + 1, end));
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.symbol;
+
+/**
+ * Open-addressing hash map from {@code long} to {@code int} with linear probing
+ * and no boxing. {@code 0} is reserved: it cannot be used as a key, and
+ * {@link #get} returns it for absent keys, so stored values must be non-zero.
+ * Not thread-safe; concurrent readers are fine once writing has stopped.
+ */
+public final class LongIntHashMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public int get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                return values[slot];
+            }
+            if (current == 0) {
+                return 0;
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != 0;
+    }
+
+    /** Stores {@code value} under {@code key} and returns the previous value, or {@code 0}. */
+    public int put(long key, int value) {
+        if (key == 0 || value == 0) {
+            throw new IllegalArgumentException("0 is reserved");
+        }
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        return 0;
+    }
+
+    /** Stores {@code value} only if {@code key} is absent; returns the value now held. */
+    public int putIfAbsent(long key, int value) {
+        int current = get(key);
+        if (current != 0) {
+            return current;
+        }
+        put(key, value);
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = slot(key);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LongIntHashMap[size=" + size + ", capacity=" + keys.length + "]";
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.symbol;
+
+import java.util.Arrays;
+
+/**
+ * Interns class names, member names and descriptors to dense {@code int} ids
+ * starting at 1, and packs member references into {@code long} keys:
+ * the owner id in the high half and the id of the (name, descriptor) pair in the low half.
+ * <p>
+ * Interning happens during analysis on one thread. Afterwards the table is only
+ * read through {@link #find} and {@link #findMember}, which never allocate and
+ * are safe to call from several threads.
+ */
+public final class SymbolTable {
+    /** Returned by the {@code find} methods for a symbol that was never interned. */
+    public static final int ABSENT = -1;
+
+    private String[] slots = new String[64];
+    private int[] slotIds = new int[64];
+    private String[] symbols = new String[64];
+    private int size;
+
+    private final LongIntHashMap signatures = new LongIntHashMap();
+
+    public int intern(String symbol) {
+        int slot = slot(symbol, slots.length);
+        while (slots[slot] != null) {
+            if (slots[slot].equals(symbol)) {
+                return slotIds[slot];
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        int id = ++size;
+        slots[slot] = symbol;
+        slotIds[slot] = id;
+        if (id >= symbols.length) {
+            symbols = Arrays.copyOf(symbols, symbols.length << 1);
+        }
+        symbols[id] = symbol;
+        if (size * 2 > slots.length) {
+            rehash(slots.length << 1);
+        }
+        return id;
+    }
+
+    /** Returns the id of {@code symbol}, or {@link #ABSENT}. */
+    public int find(String symbol) {
+        int slot = slot(symbol, slots.length);
+        String current;
+        while ((current = slots[slot]) != null) {
+            if (current.equals(symbol)) {
+                return slotIds[slot];
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        return ABSENT;
+    }
+
+    public String symbol(int id) {
+        return symbols[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Interns the three parts of a member reference and returns its packed key. */
+    public long internMember(String owner, String name, String descriptor) {
+        long signature = pack(intern(name), intern(descriptor));
+        int signatureId = signatures.putIfAbsent(signature, signatures.size() + 1);
+        return pack(intern(owner), signatureId);
+    }
+
+    /** Returns the packed key of a member reference, or {@link #ABSENT} if any part was never interned. */
+    public long findMember(String owner, String name, String descriptor) {
+        int ownerId = find(owner);
+        if (ownerId == ABSENT) {
+            return ABSENT;
+        }
+        int signatureId = findSignature(name, descriptor);
+        return signatureId == ABSENT ? ABSENT : pack(ownerId, signatureId);
+    }
+
+    /**
+     * Returns the id of a (name, descriptor) pair, the low half of its member keys,
+     * or {@link #ABSENT} if no member with that signature was interned.
+     */
+    public int findSignature(String name, String descriptor) {
+        int nameId = find(name);
+        int descriptorId = find(descriptor);
+        if (nameId == ABSENT || descriptorId == ABSENT) {
+            return ABSENT;
+        }
+        int signatureId = signatures.get(pack(nameId, descriptorId));
+        return signatureId == 0 ? ABSENT : signatureId;
+    }
+
+    /** Packs a class id and a name id into the key of a per-class name set. */
+    public static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    private static int slot(String symbol, int capacity) {
+        int hash = symbol.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (capacity - 1);
+    }
+
+    private void rehash(int capacity) {
+        String[] oldSlots = slots;
+        int[] oldIds = slotIds;
+        slots = new String[capacity];
+        slotIds = new int[capacity];
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != null) {
+                int slot = slot(oldSlots[i], capacity);
+                while (slots[slot] != null) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                slots[slot] = oldSlots[i];
+                slotIds[slot] = oldIds[i];
+            }
+        }
+    }
+}
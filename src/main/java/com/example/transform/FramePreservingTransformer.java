@@ -0,0 +1,353 @@
+package com.example.transform;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+
+/**
+ * Renames a class without recomputing anything: the constant pool is copied,
+ * stack map frames stay compressed and max stack/locals are kept. Method bodies
+ * are first scanned for constant pool references to renamed symbols; those that
+ * have none are copied byte for byte by ASM instead of being re-emitted.
+ */
+public final class FramePreservingTransformer {
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int WIDE = 0xC4;
+    private static final int GOTO_W = 0xC8;
+    private static final int JSR_W = 0xC9;
+
+    /** Instruction lengths in bytes, opcode included; switches and {@code wide} are sized separately. */
+    private static final int[] INSTRUCTION_LENGTHS = new int[256];
+
+    static {
+        Arrays.fill(INSTRUCTION_LENGTHS, 1);
+        INSTRUCTION_LENGTHS[Opcodes.BIPUSH] = 2;
+        INSTRUCTION_LENGTHS[Opcodes.SIPUSH] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.LDC] = 2;
+        INSTRUCTION_LENGTHS[LDC_W] = 3;
+        INSTRUCTION_LENGTHS[LDC2_W] = 3;
+        for (int opcode = Opcodes.ILOAD; opcode <= Opcodes.ALOAD; opcode++) {
+            INSTRUCTION_LENGTHS[opcode] = 2;
+        }
+        for (int opcode = Opcodes.ISTORE; opcode <= Opcodes.ASTORE; opcode++) {
+            INSTRUCTION_LENGTHS[opcode] = 2;
+        }
+        INSTRUCTION_LENGTHS[Opcodes.IINC] = 3;
+        for (int opcode = Opcodes.IFEQ; opcode <= Opcodes.JSR; opcode++) {
+            INSTRUCTION_LENGTHS[opcode] = 3;
+        }
+        INSTRUCTION_LENGTHS[Opcodes.RET] = 2;
+        for (int opcode = Opcodes.GETSTATIC; opcode <= Opcodes.INVOKESTATIC; opcode++) {
+            INSTRUCTION_LENGTHS[opcode] = 3;
+        }
+        INSTRUCTION_LENGTHS[Opcodes.INVOKEINTERFACE] = 5;
+        INSTRUCTION_LENGTHS[Opcodes.INVOKEDYNAMIC] = 5;
+        INSTRUCTION_LENGTHS[Opcodes.NEW] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.NEWARRAY] = 2;
+        INSTRUCTION_LENGTHS[Opcodes.ANEWARRAY] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.CHECKCAST] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.INSTANCEOF] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.MULTIANEWARRAY] = 4;
+        INSTRUCTION_LENGTHS[Opcodes.IFNULL] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.IFNONNULL] = 3;
+        INSTRUCTION_LENGTHS[GOTO_W] = 5;
+        INSTRUCTION_LENGTHS[JSR_W] = 5;
+    }
+
+    private FramePreservingTransformer() {
+    }
+
+    /**
+     * Rewrites {@code classBytes}; {@code renamedItems} are the constant pool
+     * indexes of the Class, Fieldref, Methodref and Utf8 entries the remapper changes.
+     */
+    public static byte[] transform(byte[] classBytes, Remapper remapper, BitSet renamedItems) {
+        ClassReader reader = new ClassReader(classBytes);
+        BitSet dirtyMethods = findDirtyMethods(reader, renamedItems);
+
+        ClassWriter writer = new ClassWriter(reader, 0);
+        reader.accept(new ClassRemapper(writer, remapper) {
+            private int methodIndex;
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor,
+                                             String signature, String[] exceptions) {
+                if (dirtyMethods.get(methodIndex++)) {
+                    return super.visitMethod(access, name, descriptor, signature, exceptions);
+                }
+                // Returning the writer's own visitor lets ClassReader copy the method attributes
+                // when the remapped descriptor, signature and exceptions still match the original.
+                return cv.visitMethod(access,
+                        remapper.mapMethodName(className, name, descriptor),
+                        remapper.mapMethodDesc(descriptor),
+                        remapper.mapSignature(signature, false),
+                        exceptions == null ? null : remapper.mapTypes(exceptions));
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+
+    /** Indexes, in declaration order, of the methods whose code or attributes use a changed constant. */
+    private static BitSet findDirtyMethods(ClassReader reader, BitSet renamedItems) {
+        char[] buffer = new char[reader.getMaxStringLength()];
+        int offset = reader.header + 6;
+        offset += 2 + reader.readUnsignedShort(offset) * 2;
+        int fieldCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < fieldCount; i++) {
+            offset = skipAttributes(reader, offset + 6);
+        }
+        int methodCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        int[] methodOffsets = new int[methodCount];
+        for (int i = 0; i < methodCount; i++) {
+            methodOffsets[i] = offset;
+            offset = skipAttributes(reader, offset + 6);
+        }
+
+        int bootstrapMethods = 0;
+        int attributeCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            if ("BootstrapMethods".equals(reader.readUTF8(offset, buffer))) {
+                bootstrapMethods = offset + 6;
+            }
+            offset += 6 + reader.readInt(offset + 2);
+        }
+
+        ChangedConstants constants = new ChangedConstants(reader, renamedItems, bootstrapMethods);
+        BitSet dirtyMethods = new BitSet();
+        for (int i = 0; i < methodCount; i++) {
+            if (usesChangedConstant(reader, methodOffsets[i], constants, buffer)) {
+                dirtyMethods.set(i);
+            }
+        }
+        return dirtyMethods;
+    }
+
+    private static boolean usesChangedConstant(ClassReader reader, int methodOffset,
+                                               ChangedConstants constants, char[] buffer) {
+        int offset = methodOffset + 6;
+        int attributeCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            int length = reader.readInt(offset + 2);
+            int data = offset + 6;
+            if ("Code".equals(reader.readUTF8(offset, buffer))) {
+                if (codeUsesChangedConstant(reader, data, constants)) {
+                    return true;
+                }
+            } else if (constants.anyIn(data, data + length)) {
+                return true;
+            }
+            offset = data + length;
+        }
+        return false;
+    }
+
+    private static boolean codeUsesChangedConstant(ClassReader reader, int codeAttribute, ChangedConstants constants) {
+        int codeLength = reader.readInt(codeAttribute + 4);
+        int codeStart = codeAttribute + 8;
+        int pc = 0;
+        while (pc < codeLength) {
+            int opcode = reader.readByte(codeStart + pc);
+            switch (opcode) {
+                case Opcodes.LDC:
+                    if (constants.isChanged(reader.readByte(codeStart + pc + 1))) {
+                        return true;
+                    }
+                    pc += 2;
+                    break;
+                case LDC_W:
+                case LDC2_W:
+                case Opcodes.GETSTATIC:
+                case Opcodes.PUTSTATIC:
+                case Opcodes.GETFIELD:
+                case Opcodes.PUTFIELD:
+                case Opcodes.INVOKEVIRTUAL:
+                case Opcodes.INVOKESPECIAL:
+                case Opcodes.INVOKESTATIC:
+                case Opcodes.NEW:
+                case Opcodes.ANEWARRAY:
+                case Opcodes.CHECKCAST:
+                case Opcodes.INSTANCEOF:
+                case Opcodes.INVOKEINTERFACE:
+                case Opcodes.INVOKEDYNAMIC:
+                case Opcodes.MULTIANEWARRAY:
+                    if (constants.isChanged(reader.readUnsignedShort(codeStart + pc + 1))) {
+                        return true;
+                    }
+                    pc += INSTRUCTION_LENGTHS[opcode];
+                    break;
+                case Opcodes.TABLESWITCH: {
+                    int operands = (pc + 4) & ~3;
+                    int low = reader.readInt(codeStart + operands + 4);
+                    int high = reader.readInt(codeStart + operands + 8);
+                    pc = operands + 12 + 4 * (high - low + 1);
+                    break;
+                }
+                case Opcodes.LOOKUPSWITCH: {
+                    int operands = (pc + 4) & ~3;
+                    pc = operands + 8 + 8 * reader.readInt(codeStart + operands + 4);
+                    break;
+                }
+                case WIDE:
+                    pc += reader.readByte(codeStart + pc + 1) == Opcodes.IINC ? 6 : 4;
+                    break;
+                default:
+                    pc += INSTRUCTION_LENGTHS[opcode];
+                    break;
+            }
+        }
+
+        int offset = codeStart + codeLength;
+        int exceptionCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < exceptionCount; i++) {
+            if (constants.isChanged(reader.readUnsignedShort(offset + 6))) {
+                return true;
+            }
+            offset += 8;
+        }
+        // StackMapTable, LocalVariableTable, type annotations and the like.
+        int attributeCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            int length = reader.readInt(offset + 2);
+            if (constants.anyIn(offset + 6, offset + 6 + length)) {
+                return true;
+            }
+            offset += 6 + length;
+        }
+        return false;
+    }
+
+    private static int skipAttributes(ClassReader reader, int offset) {
+        int attributeCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            offset += 6 + reader.readInt(offset + 2);
+        }
+        return offset;
+    }
+
+    /**
+     * Which constant pool entries resolve, directly or through the entries they
+     * point at, to something the remapper changes. Answers are memoized per index.
+     */
+    private static final class ChangedConstants {
+        private static final byte UNKNOWN = 0;
+        private static final byte UNCHANGED = 1;
+        private static final byte CHANGED = 2;
+
+        private final ClassReader reader;
+        private final BitSet renamedItems;
+        private final int bootstrapMethods;
+        private final byte[] states;
+        private int[] bootstrapOffsets;
+
+        ChangedConstants(ClassReader reader, BitSet renamedItems, int bootstrapMethods) {
+            this.reader = reader;
+            this.renamedItems = renamedItems;
+            this.bootstrapMethods = bootstrapMethods;
+            this.states = new byte[reader.getItemCount()];
+        }
+
+        boolean isChanged(int index) {
+            if (index <= 0 || index >= states.length) {
+                return false;
+            }
+            if (states[index] == UNKNOWN) {
+                states[index] = resolve(index) ? CHANGED : UNCHANGED;
+            }
+            return states[index] == CHANGED;
+        }
+
+        /**
+         * Conservatively checks every two-byte window of an attribute body that
+         * is not parsed, so a false match only costs a method its byte copy.
+         */
+        boolean anyIn(int start, int end) {
+            for (int offset = start; offset + 1 < end; offset++) {
+                if (isChanged(reader.readUnsignedShort(offset))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean resolve(int index) {
+            if (renamedItems.get(index)) {
+                return true;
+            }
+            int offset = reader.getItem(index);
+            if (offset == 0) {
+                return false;
+            }
+            switch (reader.readByte(offset - 1)) {
+                case Tag.STRING:
+                case Tag.METHOD_TYPE:
+                    return isChanged(reader.readUnsignedShort(offset));
+                case Tag.FIELDREF:
+                case Tag.METHODREF:
+                case Tag.INTERFACE_METHODREF:
+                case Tag.NAME_AND_TYPE:
+                    return isChanged(reader.readUnsignedShort(offset))
+                            || isChanged(reader.readUnsignedShort(offset + 2));
+                case Tag.METHOD_HANDLE:
+                    return isChanged(reader.readUnsignedShort(offset + 1));
+                case Tag.DYNAMIC:
+                case Tag.INVOKE_DYNAMIC:
+                    return isChanged(reader.readUnsignedShort(offset + 2))
+                            || isBootstrapChanged(reader.readUnsignedShort(offset));
+                default:
+                    return false;
+            }
+        }
+
+        private boolean isBootstrapChanged(int bootstrapIndex) {
+            if (bootstrapMethods == 0) {
+                return false;
+            }
+            if (bootstrapOffsets == null) {
+                bootstrapOffsets = new int[reader.readUnsignedShort(bootstrapMethods)];
+                int offset = bootstrapMethods + 2;
+                for (int i = 0; i < bootstrapOffsets.length; i++) {
+                    bootstrapOffsets[i] = offset;
+                    offset += 4 + 2 * reader.readUnsignedShort(offset + 2);
+                }
+            }
+            int offset = bootstrapOffsets[bootstrapIndex];
+            int argumentCount = reader.readUnsignedShort(offset + 2);
+            if (isChanged(reader.readUnsignedShort(offset))) {
+                return true;
+            }
+            for (int i = 0; i < argumentCount; i++) {
+                if (isChanged(reader.readUnsignedShort(offset + 4 + 2 * i))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Constant pool tags, as in JVMS 4.4. */
+    private static final class Tag {
+        static final int FIELDREF = 9;
+        static final int METHODREF = 10;
+        static final int INTERFACE_METHODREF = 11;
+        static final int STRING = 8;
+        static final int NAME_AND_TYPE = 12;
+        static final int METHOD_HANDLE = 15;
+        static final int METHOD_TYPE = 16;
+        static final int DYNAMIC = 17;
+        static final int INVOKE_DYNAMIC = 18;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.transform;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Renames class names in the text resources that name classes:
+ * {@code META-INF/services} files (and their file names), the manifest, XML and
+ * {@code .properties} files. Text is read as ISO-8859-1 so every byte round-trips
+ * unchanged whatever the real encoding; class names are ASCII, and new names are
+ * written as UTF-8.
+ * <p>
+ * A resource is first scanned with {@link #needsRewrite} and, only if it names a
+ * renamed class, streamed through {@link #rewrite(InputStream, OutputStream)}.
+ * The manifest alone is rewritten in memory, see {@link #rewriteManifest}.
+ * Binary XML, such as a compiled {@code AndroidManifest.xml}, is left alone.
+ */
+public final class ResourceRewriter {
+    private static final String SERVICES = "META-INF/services/";
+    private static final String MANIFEST = "META-INF/MANIFEST.MF";
+    private static final int MANIFEST_LINE = 72;
+    private static final int XML_PROLOG_SCAN = 64;
+
+    private final StringRewriter rewriter = new StringRewriter();
+
+    /** Whether {@code entryName} is a resource this rewriter looks into. */
+    public static boolean handles(String entryName) {
+        return entryName.startsWith(SERVICES) && entryName.length() > SERVICES.length()
+                || entryName.equalsIgnoreCase(MANIFEST)
+                || entryName.endsWith(".xml")
+                || entryName.endsWith(".properties");
+    }
+
+    /** Adds a class rename given as dotted names. */
+    public void addClass(String oldName, String newName) {
+        rewriter.addClass(oldName, new String(newName.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1));
+    }
+
+    public int size() {
+        return rewriter.size();
+    }
+
+    /** The entry name to write the resource under: a service file is named after its interface. */
+    public String renameEntry(String entryName) {
+        if (!entryName.startsWith(SERVICES)) {
+            return entryName;
+        }
+        String service = entryName.substring(SERVICES.length());
+        String renamed = rewriter.rewrite(service);
+        return renamed == service ? entryName : SERVICES + renamed;
+    }
+
+    public static boolean isManifest(String entryName) {
+        return entryName.equalsIgnoreCase(MANIFEST);
+    }
+
+    /**
+     * Whether the resource, read to its end from {@code in} without being kept,
+     * names a renamed class. Not for the manifest.
+     */
+    public boolean needsRewrite(String entryName, InputStream in) throws IOException {
+        if (entryName.endsWith(".xml")) {
+            in = new BufferedInputStream(in);
+            if (!isTextXml(in)) {
+                return false;
+            }
+        }
+        return rewriter.rewrite(new InputStreamReader(in, StandardCharsets.ISO_8859_1), Writer.nullWriter());
+    }
+
+    /** Streams the rewritten resource into {@code out}, which is left open, and returns the bytes written. */
+    public long rewrite(InputStream in, OutputStream out) throws IOException {
+        CountingWriter writer = new CountingWriter(new OutputStreamWriter(out, StandardCharsets.ISO_8859_1));
+        rewriter.rewrite(new InputStreamReader(in, StandardCharsets.ISO_8859_1), writer);
+        writer.flush();
+        return writer.count;
+    }
+
+    /**
+     * Rewrites a resource held in memory, such as one inside a nested jar.
+     * Returns {@code null} when it names no renamed class.
+     */
+    public byte[] rewrite(String entryName, byte[] data) throws IOException {
+        if (isManifest(entryName)) {
+            return rewriteManifest(data);
+        }
+        if (!needsRewrite(entryName, new ByteArrayInputStream(data))) {
+            return null;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length + 64);
+        rewrite(new ByteArrayInputStream(data), buffer);
+        return buffer.toByteArray();
+    }
+
+    /** Returns the rewritten manifest, or {@code null} when it names no renamed class. */
+    public byte[] rewriteManifest(InputStream in) throws IOException {
+        return rewriteManifest(in.readAllBytes());
+    }
+
+    /**
+     * Whether an XML file is text: after an optional UTF-8 byte order mark and
+     * whitespace, it starts with {@code <}. Binary XML starts with a chunk header
+     * instead, and UTF-16 text with another byte order mark.
+     */
+    private static boolean isTextXml(InputStream in) throws IOException {
+        in.mark(XML_PROLOG_SCAN);
+        byte[] head = in.readNBytes(XML_PROLOG_SCAN);
+        in.reset();
+        int i = head.length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF ? 3 : 0;
+        while (i < head.length && (head[i] == ' ' || head[i] == '\t' || head[i] == '\r' || head[i] == '\n')) {
+            i++;
+        }
+        return i < head.length && head[i] == '<';
+    }
+
+    /**
+     * Manifest values may be folded over continuation lines, so each header is
+     * unfolded, rewritten and, if it changed, folded again at 72 bytes.
+     */
+    private byte[] rewriteManifest(byte[] manifest) {
+        String text = new String(manifest, StandardCharsets.ISO_8859_1);
+        StringBuilder result = new StringBuilder(text.length() + 64);
+        boolean changed = false;
+        int position = 0;
+        while (position < text.length()) {
+            // A header is a line plus the continuation lines that start with a space.
+            int end = position;
+            StringBuilder logical = new StringBuilder();
+            String separator = "";
+            do {
+                int lineEnd = text.indexOf('\n', end);
+                int next = lineEnd < 0 ? text.length() : lineEnd + 1;
+                int contentEnd = lineEnd < 0 ? text.length() : lineEnd > end && text.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+                logical.append(text, end == position ? end : end + 1, contentEnd);
+                separator = text.substring(contentEnd, next);
+                end = next;
+            } while (end < text.length() && text.charAt(end) == ' ' && !separator.isEmpty());
+
+            String header = logical.toString();
+            String rewritten = rewriter.rewrite(header);
+            if (rewritten == header) {
+                result.append(text, position, end);
+            } else {
+                changed = true;
+                fold(rewritten, separator.isEmpty() ? "\r\n" : separator, result);
+                if (separator.isEmpty()) {
+                    result.setLength(result.length() - 2);
+                }
+            }
+            position = end;
+        }
+        return changed ? result.toString().getBytes(StandardCharsets.ISO_8859_1) : null;
+    }
+
+    private static final class CountingWriter extends FilterWriter {
+        long count;
+
+        CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            out.write(chars, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            out.write(text, offset, length);
+            count += length;
+        }
+    }
+
+    private static void fold(String header, String separator, StringBuilder out) {
+        int start = 0;
+        int limit = MANIFEST_LINE;
+        while (header.length() - start > limit) {
+            int cut = start + limit;
+            // Never split a UTF-8 sequence: continuation bytes are 0x80-0xBF.
+            while (cut > start + 1 && header.charAt(cut) >= 0x80 && header.charAt(cut) < 0xC0) {
+                cut--;
+            }
+            out.append(header, start, cut).append(separator).append(' ');
+            start = cut;
+            limit = MANIFEST_LINE - 1;
+        }
+        out.append(header, start, header.length()).append(separator);
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.transform;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import com.example.symbol.LongIntHashMap;
+
+/**
+ * Replaces fully qualified class names wherever they occur inside a string,
+ * in dotted ({@code pkg.Cls}) and slashed ({@code pkg/Cls}) form. All names are
+ * compiled into one Aho-Corasick automaton, so a string is scanned once in time
+ * linear in its length however many names the mapping holds.
+ * <p>
+ * A match only counts when it is a whole name: it must not continue an
+ * identifier or package on the left, and on the right it must not continue an
+ * identifier or package either, except for a {@code .class} suffix. A name in
+ * a type descriptor, such as {@code Lpkg/Cls;} in {@code (ILpkg/Cls;)V} or
+ * {@code [Lpkg.Cls;}, counts too. At each position the longest match wins and
+ * matches never overlap.
+ */
+public final class StringRewriter {
+    private static final int ROOT = 0;
+    private static final int SEGMENT = 8192;
+
+    // (state + 1) << 16 | char -> next state; ROOT is never a target, so 0 can mean none.
+    private final LongIntHashMap transitions = new LongIntHashMap();
+    private char[] labels = new char[64];
+    private int[] failure = new int[64];
+    private int[] output = new int[64];
+    private int[] dictionary = new int[64];
+    private int[] firstChild = new int[64];
+    private int[] nextSibling = new int[64];
+    // Root transitions of ASCII characters, where most text is scanned.
+    private final int[] rootTransitions = new int[128];
+    private int stateCount = 1;
+
+    private String[] replacements = new String[16];
+    private int[] lengths = new int[16];
+    private int patternCount;
+    private volatile boolean built;
+
+    public StringRewriter() {
+        output[ROOT] = -1;
+        firstChild[ROOT] = -1;
+    }
+
+    /**
+     * Adds a class rename given as dotted names. Names in the default package are
+     * skipped: a bare simple name is too likely to be ordinary text.
+     */
+    public void addClass(String oldName, String newName) {
+        if (built) {
+            throw new IllegalStateException("Rewriter already in use");
+        }
+        if (oldName.indexOf('.') < 0 || oldName.equals(newName)) {
+            return;
+        }
+        addPattern(oldName, newName);
+        addPattern(oldName.replace('.', '/'), newName.replace('.', '/'));
+    }
+
+    public int size() {
+        return patternCount;
+    }
+
+    /** Returns {@code value} with every class name replaced, or {@code value} itself when nothing matched. */
+    public String rewrite(String value) {
+        if (!built) {
+            build();
+        }
+        StringBuilder result = null;
+        int copied = 0;
+        int state = ROOT;
+        for (int i = 0; i < value.length(); i++) {
+            state = next(state, value.charAt(i));
+            int end = i + 1;
+            for (int match = output[state] >= 0 ? state : dictionary[state]; match > ROOT; match = dictionary[match]) {
+                int pattern = output[match];
+                int start = end - lengths[pattern];
+                if (start >= copied && isStartBoundary(value, start, end) && isEndBoundary(value, end)) {
+                    if (result == null) {
+                        result = new StringBuilder(value.length() + 16);
+                    }
+                    result.append(value, copied, start).append(replacements[pattern]);
+                    copied = end;
+                    break;
+                }
+            }
+        }
+        if (result == null) {
+            return value;
+        }
+        return result.append(value, copied, value.length()).toString();
+    }
+
+    /**
+     * Rewrites text streamed from {@code in} to {@code out} in one pass, holding
+     * only a few kilobytes at a time: the text is cut after characters that can
+     * be neither part of a name nor next to one, so no match spans two segments.
+     * Each segment is scanned after the character it was cut at, so a name at its
+     * start sees what precedes it. Returns whether anything was replaced.
+     */
+    public boolean rewrite(Reader in, Writer out) throws IOException {
+        char[] buffer = new char[SEGMENT * 2];
+        int length = 0;
+        boolean eof = false;
+        boolean changed = false;
+        // The character the previous segment was cut after, or -1.
+        int before = -1;
+        while (!eof || length > 0) {
+            if (!eof && length < buffer.length) {
+                int read = in.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    length += read;
+                }
+            }
+            int cut = eof ? length : lastCut(buffer, length);
+            boolean forced = false;
+            if (cut <= 0) {
+                if (length < buffer.length) {
+                    continue;
+                }
+                cut = length;
+                forced = true;
+            }
+            int context = before >= 0 ? 1 : 0;
+            String segment = context == 0 ? new String(buffer, 0, cut) : (char) before + new String(buffer, 0, cut);
+            String rewritten = rewrite(segment);
+            changed |= rewritten != segment;
+            out.write(rewritten, context, rewritten.length() - context);
+            // A forced cut may fall inside a name, which must not be scanned again.
+            before = forced ? -1 : buffer[cut - 1];
+            System.arraycopy(buffer, cut, buffer, 0, length - cut);
+            length -= cut;
+        }
+        return changed;
+    }
+
+    /** Index just after the last character a segment may end with, or {@code 0}. */
+    private static int lastCut(char[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            char c = buffer[i];
+            if (!isNamePart(c) && c != '.' && c != '/' && c != '$') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isStartBoundary(String value, int start, int end) {
+        if (start == 0) {
+            return true;
+        }
+        char c = value.charAt(start - 1);
+        if (c == 'L' && end < value.length() && value.charAt(end) == ';') {
+            return isDescriptorStart(value, start - 1);
+        }
+        return !isNamePart(c) && c != '.' && c != '/';
+    }
+
+    /**
+     * Whether the {@code L} at {@code index} opens a type descriptor: it starts the
+     * string or follows {@code [ ( ) ;}, possibly after primitive type letters.
+     */
+    private static boolean isDescriptorStart(String value, int index) {
+        int i = index - 1;
+        while (i >= 0 && "BCDFIJSZ".indexOf(value.charAt(i)) >= 0) {
+            i--;
+        }
+        return i < 0 || "[();".indexOf(value.charAt(i)) >= 0;
+    }
+
+    private static boolean isEndBoundary(String value, int end) {
+        if (end == value.length()) {
+            return true;
+        }
+        char c = value.charAt(end);
+        if (c == '.') {
+            if (value.startsWith(".class", end)) {
+                return isEndBoundary(value, end + 6);
+            }
+            return end + 1 == value.length() || !isNamePart(value.charAt(end + 1));
+        }
+        return c != '/' && !isNamePart(c);
+    }
+
+    private static boolean isNamePart(char c) {
+        return Character.isJavaIdentifierPart(c) && !Character.isIdentifierIgnorable(c);
+    }
+
+    private void addPattern(String pattern, String replacement) {
+        int state = ROOT;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            int target = transitions.get(key(state, c));
+            if (target == 0) {
+                target = newState();
+                transitions.put(key(state, c), target);
+                labels[target] = c;
+                nextSibling[target] = firstChild[state];
+                firstChild[state] = target;
+            }
+            state = target;
+        }
+        if (output[state] >= 0) {
+            return;
+        }
+        if (patternCount == replacements.length) {
+            replacements = Arrays.copyOf(replacements, patternCount * 2);
+            lengths = Arrays.copyOf(lengths, patternCount * 2);
+        }
+        replacements[patternCount] = replacement;
+        lengths[patternCount] = pattern.length();
+        output[state] = patternCount++;
+    }
+
+    private int newState() {
+        if (stateCount == output.length) {
+            int capacity = stateCount * 2;
+            failure = Arrays.copyOf(failure, capacity);
+            output = Arrays.copyOf(output, capacity);
+            dictionary = Arrays.copyOf(dictionary, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            labels = Arrays.copyOf(labels, capacity);
+        }
+        int state = stateCount++;
+        output[state] = -1;
+        firstChild[state] = -1;
+        return state;
+    }
+
+    /** Computes failure and dictionary links breadth first, once, before the first scan. */
+    private synchronized void build() {
+        if (built) {
+            return;
+        }
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child = firstChild[ROOT]; child > ROOT; child = nextSibling[child]) {
+            failure[child] = ROOT;
+            dictionary[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int child = firstChild[state]; child > ROOT; child = nextSibling[child]) {
+                char c = labels[child];
+                int fallback = failure[state];
+                while (fallback != ROOT && transitions.get(key(fallback, c)) == 0) {
+                    fallback = failure[fallback];
+                }
+                int target = transitions.get(key(fallback, c));
+                failure[child] = target;
+                dictionary[child] = output[failure[child]] >= 0 ? failure[child] : dictionary[failure[child]];
+                queue.add(child);
+            }
+        }
+        for (char c = 0; c < rootTransitions.length; c++) {
+            rootTransitions[c] = transitions.get(key(ROOT, c));
+        }
+        built = true;
+    }
+
+    private int next(int state, char c) {
+        while (state != ROOT) {
+            int target = transitions.get(key(state, c));
+            if (target != 0) {
+                return target;
+            }
+            state = failure[state];
+        }
+        return c < rootTransitions.length ? rootTransitions[c] : transitions.get(key(ROOT, c));
+    }
+
+    private static long key(int state, char c) {
+        return ((long) (state + 1) << 16) | c;
+    }
+}
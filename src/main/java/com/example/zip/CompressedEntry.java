@@ -0,0 +1,38 @@
+package com.example.zip;
+
+/**
+ * Entry data compressed ahead of writing, typically on a worker thread, with
+ * everything a zip header needs so the writer only has to append it.
+ */
+public final class CompressedEntry {
+    private final int method;
+    private final long crc;
+    private final long size;
+    private final byte[] payload;
+
+    public CompressedEntry(int method, long crc, long size, byte[] payload) {
+        this.method = method;
+        this.crc = crc;
+        this.size = size;
+        this.payload = payload;
+    }
+
+    /** {@link java.util.zip.ZipEntry#STORED} or {@link java.util.zip.ZipEntry#DEFLATED}. */
+    public int getMethod() {
+        return method;
+    }
+
+    public long getCrc() {
+        return crc;
+    }
+
+    /** Uncompressed size. */
+    public long getSize() {
+        return size;
+    }
+
+    /** The bytes as they go into the zip, exactly {@code payload.length} long. */
+    public byte[] getPayload() {
+        return payload;
+    }
+}
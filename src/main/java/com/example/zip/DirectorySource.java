@@ -0,0 +1,143 @@
+package com.example.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.ZipEntry;
+
+/**
+ * An exploded directory, such as a build's {@code classes/} output, read as if it
+ * were a jar. The tree is walked on a fork/join pool, one task per directory, and
+ * the files are listed sorted by relative path so runs are reproducible.
+ * Files are read through {@link FileChannel}s, and unchanged files are hard
+ * linked into the output where the file system allows it.
+ */
+public final class DirectorySource implements EntrySource {
+    private final Path root;
+    private final List<ZipEntry> entries;
+
+    private DirectorySource(Path root, List<ZipEntry> entries) {
+        this.root = root;
+        this.entries = entries;
+    }
+
+    public static DirectorySource open(Path root, int workers) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, workers));
+        List<ZipEntry> entries;
+        try {
+            entries = pool.invoke(new Walk(root, root));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+        entries.sort(Comparator.comparing(ZipEntry::getName));
+        return new DirectorySource(root, entries);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public Enumeration<? extends ZipEntry> entries() {
+        return Collections.enumeration(entries);
+    }
+
+    @Override
+    public InputStream getInputStream(ZipEntry entry) throws IOException {
+        return Files.newInputStream(resolve(entry));
+    }
+
+    @Override
+    public byte[] read(ZipEntry entry) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(entry), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("File too large: " + entry.getName());
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Size mismatch reading " + entry.getName());
+                }
+            }
+            return buffer.array();
+        }
+    }
+
+    /** Hard links the file to {@code target}, or copies it when linking is not possible. */
+    @Override
+    public void copyTo(ZipEntry entry, Path target) throws IOException {
+        Path file = resolve(entry);
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, file);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private Path resolve(ZipEntry entry) {
+        return root.resolve(entry.getName());
+    }
+
+    private static final class Walk extends RecursiveTask<List<ZipEntry>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path root;
+        private final Path directory;
+
+        Walk(Path root, Path directory) {
+            this.root = root;
+            this.directory = directory;
+        }
+
+        @Override
+        protected List<ZipEntry> compute() {
+            List<ZipEntry> files = new ArrayList<>();
+            List<Walk> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+                for (Path child : children) {
+                    BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                    if (attributes.isDirectory()) {
+                        if (!Files.isSymbolicLink(child)) {
+                            subdirectories.add(new Walk(root, child));
+                        }
+                    } else if (attributes.isRegularFile()) {
+                        ZipEntry entry = new ZipEntry(root.relativize(child).toString().replace(child.getFileSystem().getSeparator(), "/"));
+                        entry.setSize(attributes.size());
+                        entry.setTime(attributes.lastModifiedTime().toMillis());
+                        files.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (Walk walk : ForkJoinTask.invokeAll(subdirectories)) {
+                files.addAll(walk.join());
+            }
+            return files;
+        }
+    }
+}
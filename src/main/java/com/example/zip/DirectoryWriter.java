@@ -0,0 +1,120 @@
+package com.example.zip;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+/**
+ * {@link EntryWriter} into an exploded directory. Rewritten entries are written
+ * through a {@link FileChannel} and keep the source's modification time; copied
+ * entries are left to the source, which hard links them when it can. Whatever
+ * the directory held before is deleted first, as a jar writer replaces an old jar.
+ */
+public class DirectoryWriter implements EntryWriter {
+    private final EntrySource source;
+    private final Path root;
+
+    public DirectoryWriter(EntrySource source, Path root) throws IOException {
+        this.source = source;
+        this.root = root.toAbsolutePath().normalize();
+        clear(this.root);
+        Files.createDirectories(this.root);
+    }
+
+    @Override
+    public void write(String name, byte[] data, ZipEntry original) throws IOException {
+        Path target = target(name);
+        if (target == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        if (original.getTime() != -1) {
+            Files.setLastModifiedTime(target, FileTime.fromMillis(original.getTime()));
+        }
+    }
+
+    @Override
+    public OutputStream openEntry(String name, ZipEntry original) throws IOException {
+        Path target = target(name);
+        if (target == null) {
+            return OutputStream.nullOutputStream();
+        }
+        FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new FilterOutputStream(Channels.newOutputStream(channel)) {
+            @Override
+            public void write(byte[] data, int offset, int length) throws IOException {
+                out.write(data, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                if (original.getTime() != -1) {
+                    Files.setLastModifiedTime(target, FileTime.fromMillis(original.getTime()));
+                }
+            }
+        };
+    }
+
+    @Override
+    public void copy(String name, ZipEntry original) throws IOException {
+        Path target = target(name);
+        if (target != null) {
+            source.copyTo(original, target);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /** Empties {@code root} without following links, so no entry of an earlier run survives. */
+    private static void clear(Path root) throws IOException {
+        if (!Files.isDirectory(root, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        List<Path> stale;
+        try (Stream<Path> walk = Files.walk(root)) {
+            stale = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path path : stale) {
+            if (!path.equals(root)) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /** Resolves an entry name below the root, creating its parents; {@code null} for a directory entry. */
+    private Path target(String name) throws IOException {
+        Path target = root.resolve(name).normalize();
+        if (!target.startsWith(root)) {
+            throw new IOException("Entry outside the output directory: " + name);
+        }
+        if (name.endsWith("/")) {
+            Files.createDirectories(target);
+            return null;
+        }
+        Files.createDirectories(target.getParent());
+        return target;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.zip;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+final class DosTime {
+
+    private DosTime() {
+    }
+
+    /** Converts epoch millis to MS-DOS date and time, as {@code java.util.zip} does. */
+    static int fromJavaTime(long time) {
+        LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        int year = local.getYear() - 1980;
+        if (year < 0) {
+            return (1 << 21) | (1 << 16);
+        }
+        return year << 25 | local.getMonthValue() << 21 | local.getDayOfMonth() << 16
+                | local.getHour() << 11 | local.getMinute() << 5 | local.getSecond() >> 1;
+    }
+}
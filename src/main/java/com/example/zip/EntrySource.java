@@ -0,0 +1,74 @@
+package com.example.zip;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The entries of an input to rename: a jar, or an exploded directory of classes
+ * whose files are presented as entries named by their relative path.
+ */
+public interface EntrySource extends Closeable {
+
+    Enumeration<? extends ZipEntry> entries();
+
+    InputStream getInputStream(ZipEntry entry) throws IOException;
+
+    /** Reads the whole entry, checking it against the size it was listed with. */
+    default byte[] read(ZipEntry entry) throws IOException {
+        try (InputStream in = getInputStream(entry)) {
+            long size = entry.getSize();
+            if (size < 0 || size > Integer.MAX_VALUE - 8) {
+                return in.readAllBytes();
+            }
+            byte[] data = new byte[(int) size];
+            int read = in.readNBytes(data, 0, data.length);
+            if (read != data.length || in.read() != -1) {
+                throw new IOException("Size mismatch reading " + entry.getName());
+            }
+            return data;
+        }
+    }
+
+    /** Writes the entry unchanged to {@code target}, replacing any file there. */
+    default void copyTo(ZipEntry entry, Path target) throws IOException {
+        try (InputStream in = getInputStream(entry)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Opens a directory as a {@link DirectorySource} and anything else as a jar. */
+    static EntrySource open(File file, int workers) throws IOException {
+        if (file.isDirectory()) {
+            return DirectorySource.open(file.toPath(), workers);
+        }
+        return of(new ZipFile(file));
+    }
+
+    /** A source over an open jar; closing it closes the jar. */
+    static EntrySource of(ZipFile zipFile) {
+        return new EntrySource() {
+            @Override
+            public Enumeration<? extends ZipEntry> entries() {
+                return zipFile.entries();
+            }
+
+            @Override
+            public InputStream getInputStream(ZipEntry entry) throws IOException {
+                return zipFile.getInputStream(entry);
+            }
+
+            @Override
+            public void close() throws IOException {
+                zipFile.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.zip;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Destination for the entries of a renamed jar, written in output order.
+ */
+public interface EntryWriter extends Closeable {
+
+    /** Writes {@code data} as entry {@code name}, keeping the metadata of {@code source}. */
+    void write(String name, byte[] data, ZipEntry source) throws IOException;
+
+    /** Copies {@code source} from the input jar unchanged, stored as {@code name}. */
+    void copy(String name, ZipEntry source) throws IOException;
+
+    /**
+     * Opens entry {@code name}, with the metadata of {@code source}, for data of
+     * unknown length; closing the stream completes the entry. No other entry may
+     * be written until then.
+     */
+    OutputStream openEntry(String name, ZipEntry source) throws IOException;
+
+    /** Whether {@link #precompress} may be called from other threads to move compression off the writer. */
+    default boolean supportsPrecompressed() {
+        return false;
+    }
+
+    /**
+     * Compresses {@code data} exactly as {@link #write(String, byte[], ZipEntry)}
+     * would for {@code source}. Safe to call from several threads at once.
+     */
+    default CompressedEntry precompress(byte[] data, ZipEntry source) throws IOException {
+        throw new UnsupportedOperationException("Writer does not take pre-compressed entries");
+    }
+
+    /** Writes entry {@code name} from data returned by {@link #precompress}. */
+    default void write(String name, CompressedEntry data, ZipEntry source) throws IOException {
+        throw new UnsupportedOperationException("Writer does not take pre-compressed entries");
+    }
+}
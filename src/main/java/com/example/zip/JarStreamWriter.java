@@ -0,0 +1,114 @@
+package com.example.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * {@link EntryWriter} over a {@link JarOutputStream}: every entry, copied or not,
+ * is inflated from the source and deflated again at the configured level, except
+ * that rewritten entries stored in the source are written stored. A store-only
+ * writer stores every entry.
+ */
+public class JarStreamWriter implements EntryWriter {
+    private final EntrySource source;
+    private final JarOutputStream jarOut;
+    private final byte[] buffer = new byte[8192];
+    private final boolean storeOnly;
+
+    public JarStreamWriter(ZipFile source, OutputStream out) throws IOException {
+        this(source, out, Deflater.DEFAULT_COMPRESSION, false);
+    }
+
+    /** {@code level} is a {@link Deflater} level; {@code storeOnly} writes every entry stored. */
+    public JarStreamWriter(ZipFile source, OutputStream out, int level, boolean storeOnly) throws IOException {
+        this(EntrySource.of(source), out, level, storeOnly);
+    }
+
+    /** Writes a jar from any source, such as an exploded directory. */
+    public JarStreamWriter(EntrySource source, OutputStream out, int level, boolean storeOnly) throws IOException {
+        this.source = source;
+        this.jarOut = new JarOutputStream(out);
+        this.jarOut.setLevel(level);
+        this.storeOnly = storeOnly;
+    }
+
+    @Override
+    public void write(String name, byte[] data, ZipEntry original) throws IOException {
+        JarEntry entry = newJarEntry(name, original);
+        if (storeOnly || original.getMethod() == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        jarOut.putNextEntry(entry);
+        jarOut.write(data);
+        jarOut.closeEntry();
+    }
+
+    @Override
+    public void copy(String name, ZipEntry original) throws IOException {
+        JarEntry entry = newJarEntry(name, original);
+        if (storeOnly) {
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(original.getSize());
+            entry.setCompressedSize(original.getSize());
+            entry.setCrc(original.getCrc());
+        }
+        jarOut.putNextEntry(entry);
+        try (InputStream in = source.getInputStream(original)) {
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                jarOut.write(buffer, 0, bytesRead);
+            }
+        }
+        jarOut.closeEntry();
+    }
+
+    /** Streams deflated entries; a stored entry needs its CRC up front, so it is collected first. */
+    @Override
+    public OutputStream openEntry(String name, ZipEntry original) throws IOException {
+        if (storeOnly || original.getMethod() == ZipEntry.STORED) {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() throws IOException {
+                    JarStreamWriter.this.write(name, toByteArray(), original);
+                }
+            };
+        }
+        jarOut.putNextEntry(newJarEntry(name, original));
+        return new FilterOutputStream(jarOut) {
+            @Override
+            public void write(byte[] data, int offset, int length) throws IOException {
+                out.write(data, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                jarOut.closeEntry();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        jarOut.close();
+    }
+
+    private static JarEntry newJarEntry(String name, ZipEntry original) {
+        JarEntry entry = new JarEntry(name);
+        entry.setTime(original.getTime());
+        return entry;
+    }
+}
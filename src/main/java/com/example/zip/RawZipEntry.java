@@ -0,0 +1,48 @@
+package com.example.zip;
+
+/**
+ * Central directory record of an entry in a {@link RawZipFile}.
+ */
+public final class RawZipEntry {
+    String name;
+    int versionMadeBy;
+    int flags;
+    int method;
+    int dosTime;
+    long crc;
+    long compressedSize;
+    long size;
+    int internalAttributes;
+    int externalAttributes;
+    long localHeaderOffset;
+    long dataOffset = -1;
+    byte[] extra;
+
+    RawZipEntry() {
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMethod() {
+        return method;
+    }
+
+    public long getCrc() {
+        return crc;
+    }
+
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /** Last-modified time in MS-DOS format, date in the high half. */
+    public int getDosTime() {
+        return dosTime;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.zip;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a zip's central directory and exposes where each entry's compressed
+ * bytes live, so they can be copied without inflating them.
+ */
+public final class RawZipFile implements Closeable {
+    static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    static final int END_SIGNATURE = 0x06054b50;
+    static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    static final int ZIP64_EXTRA_ID = 0x0001;
+    static final long UNSIGNED_INT_MAX = 0xFFFFFFFFL;
+
+    private static final int END_SIZE = 22;
+    private static final int LOCATOR_SIZE = 20;
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    private final FileChannel channel;
+    private final List<RawZipEntry> entries;
+    private final Map<String, RawZipEntry> entriesByName;
+
+    public RawZipFile(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            this.entries = Collections.unmodifiableList(readCentralDirectory());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.entriesByName = new HashMap<>(entries.size() * 2);
+        for (RawZipEntry entry : entries) {
+            entriesByName.putIfAbsent(entry.name, entry);
+        }
+    }
+
+    public List<RawZipEntry> entries() {
+        return entries;
+    }
+
+    public RawZipEntry getEntry(String name) {
+        return entriesByName.get(name);
+    }
+
+    FileChannel channel() {
+        return channel;
+    }
+
+    /** Offset of the entry's compressed data, read from its local header on first use. */
+    long dataOffset(RawZipEntry entry) throws IOException {
+        if (entry.dataOffset < 0) {
+            ByteBuffer header = read(entry.localHeaderOffset, 30);
+            if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+                throw new ZipException("Bad local header for " + entry.name);
+            }
+            entry.dataOffset = entry.localHeaderOffset + 30
+                    + Short.toUnsignedInt(header.getShort(26))
+                    + Short.toUnsignedInt(header.getShort(28));
+        }
+        return entry.dataOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private List<RawZipEntry> readCentralDirectory() throws IOException {
+        long fileSize = channel.size();
+        int tailSize = (int) Math.min(fileSize, END_SIZE + MAX_COMMENT);
+        long tailStart = fileSize - tailSize;
+        ByteBuffer tail = read(tailStart, tailSize);
+
+        int end = -1;
+        for (int i = tailSize - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE
+                    && i + END_SIZE + Short.toUnsignedInt(tail.getShort(i + 20)) <= tailSize) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new ZipException("End of central directory not found");
+        }
+        long endOffset = tailStart + end;
+        long total = Short.toUnsignedInt(tail.getShort(end + 10));
+        long directorySize = Integer.toUnsignedLong(tail.getInt(end + 12));
+        long directoryOffset = Integer.toUnsignedLong(tail.getInt(end + 16));
+        long endOfDirectory = endOffset;
+
+        if (endOffset >= LOCATOR_SIZE) {
+            ByteBuffer locator = read(endOffset - LOCATOR_SIZE, LOCATOR_SIZE);
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                long zip64EndOffset = locator.getLong(8);
+                ByteBuffer zip64End = read(zip64EndOffset, 56);
+                if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                    throw new ZipException("Bad zip64 end of central directory");
+                }
+                total = zip64End.getLong(32);
+                directorySize = zip64End.getLong(40);
+                directoryOffset = zip64End.getLong(48);
+                endOfDirectory = zip64EndOffset;
+            }
+        }
+
+        // Archives with a prepended stub record offsets relative to the zip start.
+        long base = endOfDirectory - directorySize - directoryOffset;
+        if (base < 0 || directorySize > Integer.MAX_VALUE) {
+            throw new ZipException("Invalid central directory");
+        }
+        ByteBuffer directory = read(base + directoryOffset, (int) directorySize);
+
+        List<RawZipEntry> result = new ArrayList<>((int) Math.min(total, 1 << 20));
+        int position = 0;
+        while (position + 46 <= directory.limit() && directory.getInt(position) == CENTRAL_HEADER_SIGNATURE) {
+            RawZipEntry entry = new RawZipEntry();
+            entry.versionMadeBy = Short.toUnsignedInt(directory.getShort(position + 4));
+            entry.flags = Short.toUnsignedInt(directory.getShort(position + 8));
+            entry.method = Short.toUnsignedInt(directory.getShort(position + 10));
+            entry.dosTime = directory.getInt(position + 12);
+            entry.crc = Integer.toUnsignedLong(directory.getInt(position + 16));
+            entry.compressedSize = Integer.toUnsignedLong(directory.getInt(position + 20));
+            entry.size = Integer.toUnsignedLong(directory.getInt(position + 24));
+            int nameLength = Short.toUnsignedInt(directory.getShort(position + 28));
+            int extraLength = Short.toUnsignedInt(directory.getShort(position + 30));
+            int commentLength = Short.toUnsignedInt(directory.getShort(position + 32));
+            entry.internalAttributes = Short.toUnsignedInt(directory.getShort(position + 36));
+            entry.externalAttributes = directory.getInt(position + 38);
+            entry.localHeaderOffset = Integer.toUnsignedLong(directory.getInt(position + 42));
+
+            byte[] name = new byte[nameLength];
+            directory.get(position + 46, name);
+            entry.name = new String(name, StandardCharsets.UTF_8);
+            byte[] extra = new byte[extraLength];
+            directory.get(position + 46 + nameLength, extra);
+            entry.extra = readExtra(entry, extra);
+            entry.localHeaderOffset += base;
+
+            result.add(entry);
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        if (result.size() != total && total != 0xFFFF) {
+            throw new ZipException("Expected " + total + " entries but found " + result.size());
+        }
+        return result;
+    }
+
+    /** Applies any zip64 values and returns the remaining extra blocks. */
+    private static byte[] readExtra(RawZipEntry entry, byte[] extra) throws ZipException {
+        ByteBuffer buffer = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer kept = ByteBuffer.allocate(extra.length).order(ByteOrder.LITTLE_ENDIAN);
+        int position = 0;
+        while (position + 4 <= extra.length) {
+            int id = Short.toUnsignedInt(buffer.getShort(position));
+            int length = Short.toUnsignedInt(buffer.getShort(position + 2));
+            if (position + 4 + length > extra.length) {
+                break;
+            }
+            if (id == ZIP64_EXTRA_ID) {
+                int offset = position + 4;
+                int limit = offset + length;
+                if (entry.size == UNSIGNED_INT_MAX && offset + 8 <= limit) {
+                    entry.size = buffer.getLong(offset);
+                    offset += 8;
+                }
+                if (entry.compressedSize == UNSIGNED_INT_MAX && offset + 8 <= limit) {
+                    entry.compressedSize = buffer.getLong(offset);
+                    offset += 8;
+                }
+                if (entry.localHeaderOffset == UNSIGNED_INT_MAX && offset + 8 <= limit) {
+                    entry.localHeaderOffset = buffer.getLong(offset);
+                }
+            } else {
+                kept.put(extra, position, 4 + length);
+            }
+            position += 4 + length;
+        }
+        if (entry.size < 0 || entry.compressedSize < 0 || entry.localHeaderOffset < 0) {
+            throw new ZipException("Invalid zip64 sizes for " + entry.name);
+        }
+        byte[] result = new byte[kept.position()];
+        kept.get(0, result);
+        return result;
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new ZipException("Unexpected end of zip file");
+            }
+        }
+        return buffer.flip();
+    }
+}
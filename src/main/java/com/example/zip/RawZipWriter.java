@@ -0,0 +1,432 @@
+package com.example.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * {@link EntryWriter} that writes the zip format directly. Unchanged entries are
+ * copied as their original compressed bytes with {@link FileChannel#transferTo},
+ * keeping method, CRC, sizes and timestamps; rewritten entries keep the
+ * source entry's method and timestamp, or are stored when the writer is store-only.
+ * Rewritten entries can be compressed on worker threads with {@link #precompress}
+ * and appended here in order.
+ */
+public class RawZipWriter implements EntryWriter {
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final int ENCRYPTED_FLAG = 0x0001;
+    private static final int KEPT_FLAGS = 0x0007;
+
+    private final RawZipFile source;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer central = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private final int level;
+    private final boolean storeOnly;
+    // Deflaters not currently in use by any thread; ended on close.
+    private final Queue<Deflater> idleDeflaters = new ConcurrentLinkedQueue<>();
+    private long position;
+    private long entryCount;
+
+    public RawZipWriter(File sourceJar, File outputFile) throws IOException {
+        this(sourceJar, outputFile, Deflater.DEFAULT_COMPRESSION, false);
+    }
+
+    /** {@code level} is a {@link Deflater} level; {@code storeOnly} writes every rewritten entry stored. */
+    public RawZipWriter(File sourceJar, File outputFile, int level, boolean storeOnly) throws IOException {
+        this.level = level;
+        this.storeOnly = storeOnly;
+        this.source = new RawZipFile(sourceJar);
+        try {
+            this.channel = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(String name, byte[] data, ZipEntry original) throws IOException {
+        write(name, precompress(data, original), original);
+    }
+
+    @Override
+    public boolean supportsPrecompressed() {
+        return true;
+    }
+
+    @Override
+    public CompressedEntry precompress(byte[] data, ZipEntry original) throws IOException {
+        int method = rewrittenMethod(original);
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        if (method == ZipEntry.DEFLATED) {
+            return new CompressedEntry(method, crc.getValue(), data.length, deflate(data));
+        }
+        return new CompressedEntry(method, crc.getValue(), data.length, data);
+    }
+
+    @Override
+    public void write(String name, CompressedEntry data, ZipEntry original) throws IOException {
+        Record record = new Record(name, source.getEntry(original.getName()), original.getTime());
+        record.flags &= ~ENCRYPTED_FLAG;
+        record.method = data.getMethod();
+        record.crc = data.getCrc();
+        record.compressedSize = data.getPayload().length;
+        record.size = data.getSize();
+        writeLocalHeader(record);
+        put(data.getPayload(), 0, data.getPayload().length);
+        addCentralHeader(record);
+    }
+
+    @Override
+    public void copy(String name, ZipEntry original) throws IOException {
+        RawZipEntry entry = source.getEntry(original.getName());
+        if (entry == null) {
+            throw new ZipException("Entry not found in source: " + original.getName());
+        }
+
+        Record record = new Record(name, entry, -1);
+        record.method = entry.method;
+        record.crc = entry.crc;
+        record.compressedSize = entry.compressedSize;
+        record.size = entry.size;
+        writeLocalHeader(record);
+
+        flush();
+        FileChannel input = source.channel();
+        long offset = source.dataOffset(entry);
+        long remaining = entry.compressedSize;
+        while (remaining > 0) {
+            long transferred = input.transferTo(offset, remaining, channel);
+            if (transferred <= 0) {
+                throw new ZipException("Unexpected end of data for " + entry.name);
+            }
+            offset += transferred;
+            remaining -= transferred;
+        }
+        position += entry.compressedSize;
+        addCentralHeader(record);
+    }
+
+    /**
+     * Streams the entry in the source entry's method: the local header is written
+     * with a zero CRC and sizes, which are filled in once the stream is closed.
+     */
+    @Override
+    public OutputStream openEntry(String name, ZipEntry original) throws IOException {
+        Record record = new Record(name, source.getEntry(original.getName()), original.getTime());
+        record.flags &= ~ENCRYPTED_FLAG;
+        record.method = rewrittenMethod(original);
+        writeLocalHeader(record);
+        return new EntryStream(record);
+    }
+
+    /** The method of a rewritten entry: the source entry's, unless the writer is store-only. */
+    private int rewrittenMethod(ZipEntry original) throws ZipException {
+        RawZipEntry entry = source.getEntry(original.getName());
+        int method = storeOnly ? ZipEntry.STORED : entry != null ? entry.method : ZipEntry.DEFLATED;
+        if (method != ZipEntry.DEFLATED && method != ZipEntry.STORED) {
+            throw new ZipException("Unsupported compression method " + method + " for " + original.getName());
+        }
+        return method;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            Deflater deflater;
+            while ((deflater = idleDeflaters.poll()) != null) {
+                deflater.end();
+            }
+            writeEnd();
+            RawZipWriter.this.flush();
+        } finally {
+            try {
+                channel.close();
+            } finally {
+                source.close();
+            }
+        }
+    }
+
+    private byte[] deflate(byte[] data) {
+        Deflater deflater = idleDeflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        }
+        try {
+            deflater.reset();
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] deflated = new byte[Math.max(64, data.length / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == deflated.length) {
+                    deflated = Arrays.copyOf(deflated, deflated.length * 2);
+                }
+                length += deflater.deflate(deflated, length, deflated.length - length);
+            }
+            return length == deflated.length ? deflated : Arrays.copyOf(deflated, length);
+        } finally {
+            idleDeflaters.add(deflater);
+        }
+    }
+
+    private void writeLocalHeader(Record record) throws IOException {
+        if (record.size >= RawZipFile.UNSIGNED_INT_MAX || record.compressedSize >= RawZipFile.UNSIGNED_INT_MAX) {
+            throw new ZipException("Entry too large: " + record.name);
+        }
+        record.localHeaderOffset = position;
+        ensure(30 + record.nameBytes.length + record.extra.length);
+        buffer.putInt(RawZipFile.LOCAL_HEADER_SIGNATURE);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) record.flags);
+        buffer.putShort((short) record.method);
+        buffer.putInt(record.dosTime);
+        buffer.putInt((int) record.crc);
+        buffer.putInt((int) record.compressedSize);
+        buffer.putInt((int) record.size);
+        buffer.putShort((short) record.nameBytes.length);
+        buffer.putShort((short) record.extra.length);
+        buffer.put(record.nameBytes);
+        buffer.put(record.extra);
+        position += 30 + record.nameBytes.length + record.extra.length;
+    }
+
+    private void addCentralHeader(Record record) {
+        boolean zip64Offset = record.localHeaderOffset >= RawZipFile.UNSIGNED_INT_MAX;
+        int extraLength = record.extra.length + (zip64Offset ? 12 : 0);
+        int length = 46 + record.nameBytes.length + extraLength;
+        if (central.remaining() < length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(central.capacity() * 2, central.position() + length))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            central.flip();
+            grown.put(central);
+            central = grown;
+        }
+        central.putInt(RawZipFile.CENTRAL_HEADER_SIGNATURE);
+        central.putShort((short) record.versionMadeBy);
+        central.putShort((short) (zip64Offset ? VERSION_ZIP64 : VERSION));
+        central.putShort((short) record.flags);
+        central.putShort((short) record.method);
+        central.putInt(record.dosTime);
+        central.putInt((int) record.crc);
+        central.putInt((int) record.compressedSize);
+        central.putInt((int) record.size);
+        central.putShort((short) record.nameBytes.length);
+        central.putShort((short) extraLength);
+        central.putShort((short) 0);
+        central.putShort((short) 0);
+        central.putShort((short) record.internalAttributes);
+        central.putInt(record.externalAttributes);
+        central.putInt(zip64Offset ? (int) RawZipFile.UNSIGNED_INT_MAX : (int) record.localHeaderOffset);
+        central.put(record.nameBytes);
+        if (zip64Offset) {
+            central.putShort((short) RawZipFile.ZIP64_EXTRA_ID);
+            central.putShort((short) 8);
+            central.putLong(record.localHeaderOffset);
+        }
+        central.put(record.extra);
+        entryCount++;
+    }
+
+    private void writeEnd() throws IOException {
+        long directoryOffset = position;
+        long directorySize = central.position();
+        central.flip();
+        flush();
+        while (central.hasRemaining()) {
+            channel.write(central);
+        }
+        position += directorySize;
+
+        boolean zip64 = entryCount >= 0xFFFF
+                || directoryOffset >= RawZipFile.UNSIGNED_INT_MAX
+                || directorySize >= RawZipFile.UNSIGNED_INT_MAX;
+        if (zip64) {
+            long zip64EndOffset = position;
+            ensure(56 + 20);
+            buffer.putInt(RawZipFile.ZIP64_END_SIGNATURE);
+            buffer.putLong(44);
+            buffer.putShort((short) VERSION_ZIP64);
+            buffer.putShort((short) VERSION_ZIP64);
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.putLong(entryCount);
+            buffer.putLong(entryCount);
+            buffer.putLong(directorySize);
+            buffer.putLong(directoryOffset);
+            buffer.putInt(RawZipFile.ZIP64_LOCATOR_SIGNATURE);
+            buffer.putInt(0);
+            buffer.putLong(zip64EndOffset);
+            buffer.putInt(1);
+            position += 56 + 20;
+        }
+        ensure(22);
+        buffer.putInt(RawZipFile.END_SIGNATURE);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) (zip64 ? 0xFFFF : entryCount));
+        buffer.putShort((short) (zip64 ? 0xFFFF : entryCount));
+        buffer.putInt(zip64 ? (int) RawZipFile.UNSIGNED_INT_MAX : (int) directorySize);
+        buffer.putInt(zip64 ? (int) RawZipFile.UNSIGNED_INT_MAX : (int) directoryOffset);
+        buffer.putShort((short) 0);
+        position += 22;
+    }
+
+    private void put(byte[] data, int offset, int length) throws IOException {
+        if (length > buffer.capacity()) {
+            RawZipWriter.this.flush();
+            ByteBuffer wrapped = ByteBuffer.wrap(data, offset, length);
+            while (wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+        } else {
+            ensure(length);
+            buffer.put(data, offset, length);
+        }
+        position += length;
+    }
+
+    private void ensure(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            RawZipWriter.this.flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /** Data of an entry opened with {@link #openEntry}, compressed as it arrives. */
+    private final class EntryStream extends OutputStream {
+        private final Record record;
+        private final CRC32 crc = new CRC32();
+        private final Deflater deflater;
+        private final byte[] deflated;
+        private final long dataStart = position;
+        private boolean closed;
+
+        EntryStream(Record record) {
+            this.record = record;
+            if (record.method == ZipEntry.DEFLATED) {
+                Deflater idle = idleDeflaters.poll();
+                deflater = idle != null ? idle : new Deflater(level, true);
+                deflater.reset();
+                deflated = new byte[8192];
+            } else {
+                deflater = null;
+                deflated = null;
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            crc.update(data, offset, length);
+            record.size += length;
+            if (deflater == null) {
+                put(data, offset, length);
+                return;
+            }
+            deflater.setInput(data, offset, length);
+            while (!deflater.needsInput()) {
+                drain();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (deflater != null) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    drain();
+                }
+                idleDeflaters.add(deflater);
+            }
+            record.crc = crc.getValue();
+            record.compressedSize = position - dataStart;
+            if (record.size >= RawZipFile.UNSIGNED_INT_MAX || record.compressedSize >= RawZipFile.UNSIGNED_INT_MAX) {
+                throw new ZipException("Entry too large: " + record.name);
+            }
+            // CRC, compressed size and size sit 14 bytes into the local header.
+            RawZipWriter.this.flush();
+            ByteBuffer sizes = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            sizes.putInt((int) record.crc).putInt((int) record.compressedSize).putInt((int) record.size).flip();
+            long at = record.localHeaderOffset + 14;
+            while (sizes.hasRemaining()) {
+                at += channel.write(sizes, at);
+            }
+            addCentralHeader(record);
+        }
+
+        private void drain() throws IOException {
+            int length = deflater.deflate(deflated, 0, deflated.length);
+            put(deflated, 0, length);
+        }
+    }
+
+    private static final class Record {
+        final String name;
+        final byte[] nameBytes;
+        int flags;
+        final int dosTime;
+        final int versionMadeBy;
+        final int internalAttributes;
+        final int externalAttributes;
+        final byte[] extra;
+        int method;
+        long crc;
+        long compressedSize;
+        long size;
+        long localHeaderOffset;
+
+        Record(String name, RawZipEntry entry, long time) {
+            this.name = name;
+            this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            if (entry != null) {
+                this.flags = (entry.flags & KEPT_FLAGS) | UTF8_FLAG;
+                this.dosTime = entry.dosTime;
+                this.versionMadeBy = entry.versionMadeBy;
+                this.internalAttributes = entry.internalAttributes;
+                this.externalAttributes = entry.externalAttributes;
+                this.extra = entry.extra;
+            } else {
+                this.flags = UTF8_FLAG;
+                this.dosTime = DosTime.fromJavaTime(time >= 0 ? time : System.currentTimeMillis());
+                this.versionMadeBy = VERSION;
+                this.internalAttributes = 0;
+                this.externalAttributes = 0;
+                this.extra = new byte[0];
+            }
+        }
+    }
+}
@@ -0,0 +1,555 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import com.example.mapping.HashMappingIndex;
+import com.example.retrace.RetraceIndex;
+import com.example.retrace.Retracer;
+
+class JarRenamerTest {
+    /** The start of a compiled Android XML chunk, with a class name in its string pool. */
+    private static final byte[] BINARY_XML = {
+            0x03, 0x00, 0x08, 0x00, 0x30, 0x00, 0x00, 0x00,
+            'a', '.', 'b', '.', 'I', 'm', 'p', 'l', 0x00, 0x00};
+
+    @TempDir
+    File dir;
+
+    @Test
+    void classNameStringsStillLoadAfterRenaming() throws Exception {
+        File renamed = renameForName(new RenamerOptions());
+        assertEquals("a.b.Zimpl", TestJars.invoke(renamed, "a.b.Main", "dotted"));
+        assertEquals("a/b/Zimpl", TestJars.invoke(renamed, "a.b.Main", "internal"));
+    }
+
+    @Test
+    void classNameStringsStillLoadWithStringReferenceRewriting() throws Exception {
+        RenamerOptions options = new RenamerOptions();
+        options.setRewriteStringReferences(true);
+        File renamed = renameForName(options);
+        assertEquals("a.b.Zimpl", TestJars.invoke(renamed, "a.b.Main", "dotted"));
+        assertEquals("a/b/Zimpl", TestJars.invoke(renamed, "a.b.Main", "internal"));
+    }
+
+    @Test
+    void arrayClassNameStringsLoadWithStringReferenceRewriting() throws Exception {
+        RenamerOptions options = new RenamerOptions();
+        options.setRewriteStringReferences(true);
+        assertEquals("[La.b.Zimpl;", TestJars.invoke(renameForName(options), "a.b.Main", "array"));
+    }
+
+    @Test
+    void descriptorStringsResolveWithStringReferenceRewriting() throws Exception {
+        RenamerOptions options = new RenamerOptions();
+        options.setRewriteStringReferences(true);
+        assertEquals("(ILa/b/Zimpl;)La/b/Zimpl;", TestJars.invoke(renameForName(options), "a.b.Main", "descriptor"));
+    }
+
+    @Test
+    void renamedFieldDoesNotHideAnInheritedOne() throws Exception {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("La/Base;->cnt:I", "q");
+        fields.put("La/Base;->val:I", "q_0");
+        fields.put("La/Impl;->other:I", "q");
+        assertEquals(12, TestJars.invoke(renameForFields("other", fields), "a.Impl", "run"));
+    }
+
+    @Test
+    void renamedFieldIsNotHiddenByAKeptOne() throws Exception {
+        File renamed = renameForFields("q", Map.of("La/Base;->cnt:I", "q"));
+        assertEquals(12, TestJars.invoke(renamed, "a.Impl", "run"));
+    }
+
+    @Test
+    void renamedMethodDoesNotOverrideAnUnrelatedOne() throws Exception {
+        Map<String, String> methods = new LinkedHashMap<>();
+        methods.put("La/Base;->foo()I", "x");
+        methods.put("La/Sub;->bar()I", "x");
+        assertEquals(1, TestJars.invoke(renameForMethods("bar", methods), "a.Sub", "run"));
+    }
+
+    @Test
+    void renamedMethodIsNotOverriddenByAKeptOne() throws Exception {
+        File renamed = renameForMethods("x", Map.of("La/Base;->foo()I", "x"));
+        assertEquals(1, TestJars.invoke(renamed, "a.Sub", "run"));
+    }
+
+    @Test
+    void preservedFramesBehaveLikeTheDefaultTransform() throws Exception {
+        RenamerOptions options = new RenamerOptions();
+        options.setPreserveFrames(true);
+        File preserved = renameForHandles("preserved", options);
+        File full = renameForHandles("full", new RenamerOptions());
+
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        expected.put("field", 20);
+        expected.put("lambda", 40);
+        expected.put("handles", 26);
+        expected.put("plain", 7);
+        for (Map.Entry<String, Integer> method : expected.entrySet()) {
+            assertEquals(method.getValue(), TestJars.invoke(full, "a.Caller", method.getKey()), method.getKey());
+            assertEquals(method.getValue(), TestJars.invoke(preserved, "a.Caller", method.getKey()), method.getKey());
+        }
+        assertEquals(readEntries(full).keySet(), readEntries(preserved).keySet());
+    }
+
+    @Test
+    void writtenMappingRetracesFamilyRenames() throws Exception {
+        ClassWriter api = TestJars.newClass("a/b/Api", "java/lang/Object");
+        MethodVisitor go = api.visitMethod(Opcodes.ACC_PUBLIC, "go", "()V", null, null);
+        go.visitCode();
+        go.visitInsn(Opcodes.RETURN);
+        go.visitMaxs(0, 0);
+        go.visitEnd();
+        api.visitEnd();
+        ClassWriter impl = TestJars.newClass("a/b/Impl", "a/b/Api");
+        go = impl.visitMethod(Opcodes.ACC_PUBLIC, "go", "()V", null, null);
+        go.visitCode();
+        go.visitInsn(Opcodes.RETURN);
+        go.visitMaxs(0, 0);
+        go.visitEnd();
+        impl.visitEnd();
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        classes.put("a/b/Api", api.toByteArray());
+        classes.put("a/b/Impl", impl.toByteArray());
+        File jar = TestJars.jar(new File(dir, "family.jar"), classes);
+        // Only Api.go is mapped; Impl.go follows it as part of the same override family.
+        File mapping = TestJars.mapping(new File(dir, "codedata.txt"),
+                Map.of("La/b/Impl;", "Zimpl"), Map.of("La/b/Api;->go()V", "exec"), Map.of());
+        RenamerOptions options = new RenamerOptions();
+        options.setWriteMapping(true);
+        new JarRenamer(jar, HashMappingIndex.load(mapping), null, options).execute();
+
+        RetraceIndex index = RetraceIndex.load(new File(dir, "family-mapping.txt"));
+        assertEquals("\tat a.b.Zimpl.exec(Unknown Source)\n",
+                new Retracer(index, RetraceIndex.Direction.OLD_TO_NEW, 1).retrace("\tat a.b.Impl.go(Unknown Source)\n"));
+        assertEquals("\tat a.b.Impl.go(Unknown Source)\n",
+                new Retracer(index, RetraceIndex.Direction.NEW_TO_OLD, 1).retrace("\tat a.b.Zimpl.exec(Unknown Source)\n"));
+    }
+
+    @Test
+    void textResourcesAreRewrittenAndBinaryXmlIsKept() throws Exception {
+        // Through the jar stream writer, the raw zip writer, and the raw zip writer fed by the streaming pipeline.
+        for (int writer = 0; writer < 3; writer++) {
+            RenamerOptions options = new RenamerOptions();
+            options.setRewriteResources(true);
+            options.setRawCopy(writer > 0);
+            if (writer == 2) {
+                options.setStreaming(true);
+                options.setWorkerCount(2);
+            }
+            File renamed = renameResources(options);
+            Map<String, byte[]> entries = readEntries(renamed);
+            assertEquals("a.b.Zimpl\n", new String(entries.get("META-INF/services/a.b.Api"), StandardCharsets.UTF_8));
+            assertEquals("<?xml version=\"1.0\"?>\n<bean class=\"a.b.Zimpl\"/>\n",
+                    new String(entries.get("beans.xml"), StandardCharsets.UTF_8));
+            assertArrayEquals(BINARY_XML, entries.get("AndroidManifest.xml"));
+        }
+    }
+
+    @Test
+    void textResourcesAreRewrittenIntoADirectory() throws Exception {
+        RenamerOptions options = new RenamerOptions();
+        options.setRewriteResources(true);
+        options.setExplodedOutput(true);
+        File renamed = renameResources(options);
+        assertEquals("a.b.Zimpl\n", Files.readString(new File(renamed, "META-INF/services/a.b.Api").toPath()));
+        assertArrayEquals(BINARY_XML, Files.readAllBytes(new File(renamed, "AndroidManifest.xml").toPath()));
+    }
+
+    @Test
+    void explodedOutputReplacesAnEarlierRun() throws Exception {
+        File stale = new File(dir, "resources-renamed/a/b/Impl.class");
+        Files.createDirectories(stale.getParentFile().toPath());
+        Files.write(stale.toPath(), new byte[] {1});
+        RenamerOptions options = new RenamerOptions();
+        options.setExplodedOutput(true);
+        File renamed = renameResources(options);
+        assertFalse(stale.exists());
+        assertTrue(new File(renamed, "a/b/Zimpl.class").isFile());
+    }
+
+    @Test
+    void rawCopyOutputReadsBackThroughCentralDirectoryAndLocalHeaders() throws Exception {
+        ClassWriter impl = TestJars.newClass("a/b/Impl", "java/lang/Object");
+        impl.visitEnd();
+        ClassWriter user = TestJars.newClass("a/b/User", "a/b/Impl");
+        user.visitEnd();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        File jar = new File(dir, "raw.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            // Deflated entries without sizes up front are followed by a data descriptor.
+            putEntry(out, "a/b/Impl.class", impl.toByteArray());
+            putStoredEntry(out, "a/b/User.class", user.toByteArray());
+            putEntry(out, "data/deflated.txt", text.toString().getBytes(StandardCharsets.UTF_8));
+            putStoredEntry(out, "data/stored.txt", "stored\n".getBytes(StandardCharsets.UTF_8));
+        }
+        File mapping = TestJars.mapping(new File(dir, "codedata.txt"),
+                Map.of("La/b/Impl;", "Zimpl"), Map.of(), Map.of());
+
+        // Through the raw zip writer alone, with pre-compressing workers, and fed by the streaming pipeline.
+        for (int writer = 0; writer < 3; writer++) {
+            RenamerOptions options = new RenamerOptions();
+            options.setRawCopy(true);
+            options.setWorkerCount(writer == 0 ? 1 : 2);
+            options.setStreaming(writer == 2);
+            File renamed = new JarRenamer(jar, HashMappingIndex.load(mapping), null, options).execute();
+
+            Map<String, byte[]> local = readEntries(renamed);
+            try (ZipFile source = new ZipFile(jar); ZipFile output = new ZipFile(renamed)) {
+                List<String> names = new ArrayList<>();
+                output.stream().forEach(entry -> names.add(entry.getName()));
+                assertEquals(List.of("a/b/Zimpl.class", "a/b/User.class", "data/deflated.txt", "data/stored.txt"),
+                        names);
+                assertEquals(names, new ArrayList<>(local.keySet()));
+                for (String name : names) {
+                    assertArrayEquals(output.getInputStream(output.getEntry(name)).readAllBytes(), local.get(name));
+                }
+
+                for (String name : List.of("data/deflated.txt", "data/stored.txt")) {
+                    ZipEntry in = source.getEntry(name);
+                    ZipEntry out = output.getEntry(name);
+                    assertEquals(in.getMethod(), out.getMethod());
+                    assertEquals(in.getCrc(), out.getCrc());
+                    assertEquals(in.getSize(), out.getSize());
+                    assertEquals(in.getCompressedSize(), out.getCompressedSize());
+                    assertEquals(in.getTime(), out.getTime());
+                    assertArrayEquals(source.getInputStream(in).readAllBytes(), local.get(name));
+                }
+                // A rewritten entry keeps the method it had in the source.
+                assertEquals(ZipEntry.STORED, output.getEntry("a/b/User.class").getMethod());
+                assertEquals(ZipEntry.DEFLATED, output.getEntry("a/b/Zimpl.class").getMethod());
+            }
+        }
+    }
+
+    private File renameResources(RenamerOptions options) throws Exception {
+        ClassWriter impl = TestJars.newClass("a/b/Impl", "java/lang/Object");
+        impl.visitEnd();
+        File jar = new File(dir, "resources.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            putEntry(out, "a/b/Impl.class", impl.toByteArray());
+            putEntry(out, "META-INF/services/a.b.Api", "a.b.Impl\n".getBytes(StandardCharsets.UTF_8));
+            putEntry(out, "beans.xml",
+                    "<?xml version=\"1.0\"?>\n<bean class=\"a.b.Impl\"/>\n".getBytes(StandardCharsets.UTF_8));
+            putEntry(out, "AndroidManifest.xml", BINARY_XML);
+        }
+        File mapping = TestJars.mapping(new File(dir, "codedata.txt"),
+                Map.of("La/b/Impl;", "Zimpl"), Map.of(), Map.of());
+        return new JarRenamer(jar, HashMappingIndex.load(mapping), null, options).execute();
+    }
+
+    private static void putEntry(JarOutputStream out, String name, byte[] data) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(data);
+        out.closeEntry();
+    }
+
+    private static void putStoredEntry(JarOutputStream out, String name, byte[] data) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(data);
+        out.closeEntry();
+    }
+
+    /** Reads a jar through its local headers, which also checks each entry's CRC and sizes. */
+    private static Map<String, byte[]> readEntries(File jar) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(jar))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                entries.put(entry.getName(), in.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Renames a jar where {@code a.Base.foo()I} returns 1 and {@code a.Sub}, which
+     * extends it, declares {@code own()I} returning 2; {@code Sub.run()} returns
+     * {@code new Sub().foo()}.
+     */
+    private File renameForMethods(String own, Map<String, String> methods) throws Exception {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        ClassWriter base = TestJars.newClass("a/Base", "java/lang/Object");
+        constant(base, Opcodes.ACC_PUBLIC, "foo", 1);
+        base.visitEnd();
+        classes.put("a/Base", base.toByteArray());
+
+        ClassWriter sub = TestJars.newClass("a/Sub", "a/Base");
+        constant(sub, Opcodes.ACC_PUBLIC, own, 2);
+        MethodVisitor run = sub.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "()I", null, null);
+        run.visitCode();
+        run.visitTypeInsn(Opcodes.NEW, "a/Sub");
+        run.visitInsn(Opcodes.DUP);
+        run.visitMethodInsn(Opcodes.INVOKESPECIAL, "a/Sub", "<init>", "()V", false);
+        run.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "a/Sub", "foo", "()I", false);
+        run.visitInsn(Opcodes.IRETURN);
+        run.visitMaxs(0, 0);
+        run.visitEnd();
+        sub.visitEnd();
+        classes.put("a/Sub", sub.toByteArray());
+
+        File jar = TestJars.jar(new File(dir, "methods.jar"), classes);
+        File mapping = TestJars.mapping(new File(dir, "codedata.txt"), Map.of(), methods, Map.of());
+        return new JarRenamer(jar, HashMappingIndex.load(mapping), null, new RenamerOptions()).execute();
+    }
+
+    /** Adds a method {@code name()I} returning {@code value}. */
+    private static void constant(ClassWriter cw, int access, String name, int value) {
+        MethodVisitor method = cw.visitMethod(access, name, "()I", null, null);
+        method.visitCode();
+        method.visitIntInsn(Opcodes.BIPUSH, value);
+        method.visitInsn(Opcodes.IRETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    /**
+     * Renames a jar where {@code a.Impl} extends {@code a.Base}, which declares
+     * {@code cnt} and {@code val}; {@code Impl.run()} sets {@code cnt} through an
+     * {@code Impl} reference to 1 and its own field {@code own} to 2, and returns
+     * {@code cnt * 10 + own}.
+     */
+    private File renameForFields(String own, Map<String, String> fields) throws Exception {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        ClassWriter base = TestJars.newClass("a/Base", "java/lang/Object");
+        base.visitField(Opcodes.ACC_PUBLIC, "cnt", "I", null, null).visitEnd();
+        base.visitField(Opcodes.ACC_PUBLIC, "val", "I", null, null).visitEnd();
+        base.visitEnd();
+        classes.put("a/Base", base.toByteArray());
+
+        ClassWriter impl = TestJars.newClass("a/Impl", "a/Base");
+        impl.visitField(Opcodes.ACC_PUBLIC, own, "I", null, null).visitEnd();
+        MethodVisitor run = impl.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "()I", null, null);
+        run.visitCode();
+        run.visitTypeInsn(Opcodes.NEW, "a/Impl");
+        run.visitInsn(Opcodes.DUP);
+        run.visitMethodInsn(Opcodes.INVOKESPECIAL, "a/Impl", "<init>", "()V", false);
+        run.visitVarInsn(Opcodes.ASTORE, 0);
+        run.visitVarInsn(Opcodes.ALOAD, 0);
+        run.visitInsn(Opcodes.ICONST_1);
+        run.visitFieldInsn(Opcodes.PUTFIELD, "a/Impl", "cnt", "I");
+        run.visitVarInsn(Opcodes.ALOAD, 0);
+        run.visitInsn(Opcodes.ICONST_2);
+        run.visitFieldInsn(Opcodes.PUTFIELD, "a/Impl", own, "I");
+        run.visitVarInsn(Opcodes.ALOAD, 0);
+        run.visitFieldInsn(Opcodes.GETFIELD, "a/Impl", "cnt", "I");
+        run.visitIntInsn(Opcodes.BIPUSH, 10);
+        run.visitInsn(Opcodes.IMUL);
+        run.visitVarInsn(Opcodes.ALOAD, 0);
+        run.visitFieldInsn(Opcodes.GETFIELD, "a/Impl", own, "I");
+        run.visitInsn(Opcodes.IADD);
+        run.visitInsn(Opcodes.IRETURN);
+        run.visitMaxs(0, 0);
+        run.visitEnd();
+        impl.visitEnd();
+        classes.put("a/Impl", impl.toByteArray());
+
+        File jar = TestJars.jar(new File(dir, "fields.jar"), classes);
+        File mapping = TestJars.mapping(new File(dir, "codedata.txt"), Map.of(), Map.of(), fields);
+        return new JarRenamer(jar, HashMappingIndex.load(mapping), null, new RenamerOptions()).execute();
+    }
+
+    /**
+     * Renames a jar where {@code a.User} reaches {@code a.Target}'s static field
+     * {@code value}, set to 20, and method {@code twice(I)I}, one way per method:
+     * {@code field()} through field instructions, with a {@code Target} local kept
+     * across a branch so that its stack map frame names a renamed class;
+     * {@code lambda()} through the bootstrap arguments of an invokedynamic; and
+     * {@code handles()} through method handle constants. {@code plain()} uses
+     * nothing renamed. Both classes and both members are renamed.
+     */
+    private File renameForHandles(String name, RenamerOptions options) throws Exception {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        ClassWriter target = TestJars.newClass("a/Target", "java/lang/Object");
+        target.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "value", "I", null, null).visitEnd();
+        MethodVisitor clinit = target.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+        clinit.visitCode();
+        clinit.visitIntInsn(Opcodes.BIPUSH, 20);
+        clinit.visitFieldInsn(Opcodes.PUTSTATIC, "a/Target", "value", "I");
+        clinit.visitInsn(Opcodes.RETURN);
+        clinit.visitMaxs(0, 0);
+        clinit.visitEnd();
+        MethodVisitor twice = target.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "twice", "(I)I", null, null);
+        twice.visitCode();
+        twice.visitVarInsn(Opcodes.ILOAD, 0);
+        twice.visitInsn(Opcodes.ICONST_2);
+        twice.visitInsn(Opcodes.IMUL);
+        twice.visitInsn(Opcodes.IRETURN);
+        twice.visitMaxs(0, 0);
+        twice.visitEnd();
+        target.visitEnd();
+        classes.put("a/Target", target.toByteArray());
+
+        ClassWriter user = TestJars.newClass("a/User", "java/lang/Object");
+        // field() returns value, read after a branch on it.
+        MethodVisitor field = user.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "field", "()I", null, null);
+        field.visitCode();
+        field.visitTypeInsn(Opcodes.NEW, "a/Target");
+        field.visitInsn(Opcodes.DUP);
+        field.visitMethodInsn(Opcodes.INVOKESPECIAL, "a/Target", "<init>", "()V", false);
+        field.visitVarInsn(Opcodes.ASTORE, 0);
+        Label set = new Label();
+        field.visitFieldInsn(Opcodes.GETSTATIC, "a/Target", "value", "I");
+        field.visitJumpInsn(Opcodes.IFNE, set);
+        field.visitInsn(Opcodes.ICONST_0);
+        field.visitInsn(Opcodes.IRETURN);
+        field.visitLabel(set);
+        field.visitVarInsn(Opcodes.ALOAD, 0);
+        field.visitTypeInsn(Opcodes.CHECKCAST, "a/Target");
+        field.visitInsn(Opcodes.POP);
+        field.visitFieldInsn(Opcodes.GETSTATIC, "a/Target", "value", "I");
+        field.visitInsn(Opcodes.IRETURN);
+        field.visitMaxs(0, 0);
+        field.visitEnd();
+        // lambda() returns ((IntUnaryOperator) Target::twice).applyAsInt(20).
+        Handle twiceHandle = new Handle(Opcodes.H_INVOKESTATIC, "a/Target", "twice", "(I)I", false);
+        Handle metafactory = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory", "metafactory",
+                "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;"
+                        + "Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)"
+                        + "Ljava/lang/invoke/CallSite;", false);
+        MethodVisitor lambda = user.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "lambda", "()I", null, null);
+        lambda.visitCode();
+        lambda.visitInvokeDynamicInsn("applyAsInt", "()Ljava/util/function/IntUnaryOperator;", metafactory,
+                Type.getMethodType("(I)I"), twiceHandle, Type.getMethodType("(I)I"));
+        lambda.visitIntInsn(Opcodes.BIPUSH, 20);
+        lambda.visitMethodInsn(Opcodes.INVOKEINTERFACE, "java/util/function/IntUnaryOperator", "applyAsInt",
+                "(I)I", true);
+        lambda.visitInsn(Opcodes.IRETURN);
+        lambda.visitMaxs(0, 0);
+        lambda.visitEnd();
+        // handles() returns twice(3) + value through method handle constants.
+        MethodVisitor handles = user.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "handles", "()I", null, null);
+        handles.visitCode();
+        handles.visitLdcInsn(twiceHandle);
+        handles.visitInsn(Opcodes.ICONST_3);
+        handles.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", "(I)I", false);
+        handles.visitLdcInsn(new Handle(Opcodes.H_GETSTATIC, "a/Target", "value", "I", false));
+        handles.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", "()I", false);
+        handles.visitInsn(Opcodes.IADD);
+        handles.visitInsn(Opcodes.IRETURN);
+        handles.visitMaxs(0, 0);
+        handles.visitEnd();
+        MethodVisitor plain = user.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "plain", "()I", null, null);
+        plain.visitCode();
+        Label positive = new Label();
+        plain.visitInsn(Opcodes.ICONST_1);
+        plain.visitJumpInsn(Opcodes.IFNE, positive);
+        plain.visitInsn(Opcodes.ICONST_0);
+        plain.visitInsn(Opcodes.IRETURN);
+        plain.visitLabel(positive);
+        plain.visitIntInsn(Opcodes.BIPUSH, 7);
+        plain.visitInsn(Opcodes.IRETURN);
+        plain.visitMaxs(0, 0);
+        plain.visitEnd();
+        user.visitEnd();
+        classes.put("a/User", user.toByteArray());
+
+        File jar = TestJars.jar(new File(dir, name + ".jar"), classes);
+        File mapping = TestJars.mapping(new File(dir, name + "-codedata.txt"),
+                Map.of("La/Target;", "Values", "La/User;", "Caller"),
+                Map.of("La/Target;->twice(I)I", "dbl"),
+                Map.of("La/Target;->value:I", "v"));
+        return new JarRenamer(jar, HashMappingIndex.load(mapping), null, options).execute();
+    }
+
+    /** Renames a jar whose {@code a.b.Main} loads {@code a.b.Impl} by name. */
+    private File renameForName(RenamerOptions options) throws Exception {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        ClassWriter impl = TestJars.newClass("a/b/Impl", "java/lang/Object");
+        impl.visitEnd();
+        classes.put("a/b/Impl", impl.toByteArray());
+
+        ClassWriter main = TestJars.newClass("a/b/Main", "java/lang/Object");
+        // dotted() returns Class.forName("a.b.Impl").getName().
+        MethodVisitor dotted = main.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "dotted",
+                "()Ljava/lang/String;", null, null);
+        dotted.visitCode();
+        dotted.visitLdcInsn("a.b.Impl");
+        dotted.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Class", "forName",
+                "(Ljava/lang/String;)Ljava/lang/Class;", false);
+        dotted.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Class", "getName", "()Ljava/lang/String;", false);
+        dotted.visitInsn(Opcodes.ARETURN);
+        dotted.visitMaxs(0, 0);
+        dotted.visitEnd();
+        // internal() returns the internal name as a constant.
+        MethodVisitor internal = main.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "internal",
+                "()Ljava/lang/String;", null, null);
+        internal.visitCode();
+        internal.visitLdcInsn("a/b/Impl");
+        internal.visitInsn(Opcodes.ARETURN);
+        internal.visitMaxs(0, 0);
+        internal.visitEnd();
+        // array() returns Class.forName("[La.b.Impl;").getName().
+        MethodVisitor array = main.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "array",
+                "()Ljava/lang/String;", null, null);
+        array.visitCode();
+        array.visitLdcInsn("[La.b.Impl;");
+        array.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Class", "forName",
+                "(Ljava/lang/String;)Ljava/lang/Class;", false);
+        array.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Class", "getName", "()Ljava/lang/String;", false);
+        array.visitInsn(Opcodes.ARETURN);
+        array.visitMaxs(0, 0);
+        array.visitEnd();
+        // descriptor() resolves "(ILa/b/Impl;)La/b/Impl;" with MethodType and returns it again.
+        MethodVisitor descriptor = main.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "descriptor",
+                "()Ljava/lang/String;", null, null);
+        descriptor.visitCode();
+        descriptor.visitLdcInsn("(ILa/b/Impl;)La/b/Impl;");
+        descriptor.visitLdcInsn(Type.getObjectType("a/b/Main"));
+        descriptor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Class", "getClassLoader",
+                "()Ljava/lang/ClassLoader;", false);
+        descriptor.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/invoke/MethodType", "fromMethodDescriptorString",
+                "(Ljava/lang/String;Ljava/lang/ClassLoader;)Ljava/lang/invoke/MethodType;", false);
+        descriptor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/invoke/MethodType", "toMethodDescriptorString",
+                "()Ljava/lang/String;", false);
+        descriptor.visitInsn(Opcodes.ARETURN);
+        descriptor.visitMaxs(0, 0);
+        descriptor.visitEnd();
+        main.visitEnd();
+        classes.put("a/b/Main", main.toByteArray());
+
+        File jar = TestJars.jar(new File(dir, "app.jar"), classes);
+        File mapping = TestJars.mapping(new File(dir, "codedata.txt"),
+                Map.of("La/b/Impl;", "Zimpl"), Map.of(), Map.of());
+        return new JarRenamer(jar, HashMappingIndex.load(mapping), null, options).execute();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/** Builds small jars and JEB mappings for the tests, and runs code from renamed jars. */
+final class TestJars {
+    private TestJars() {
+    }
+
+    /** Writes the classes, keyed by internal name, into a jar. */
+    static File jar(File file, Map<String, byte[]> classes) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                out.putNextEntry(new ZipEntry(entry.getKey() + ".class"));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    /** Writes a JEB export; each map goes from a JEB signature such as {@code La/B;->f:I} to its new name. */
+    static File mapping(File file, Map<String, String> classes, Map<String, String> methods,
+                        Map<String, String> fields) throws IOException {
+        String json = "{\"proj\": {\"u1\": {\n"
+                + " \"renamed_classes\": " + object(classes) + ",\n"
+                + " \"renamed_methods\": " + object(methods) + ",\n"
+                + " \"renamed_fields\": " + object(fields) + "\n"
+                + "}}}\n";
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String object(Map<String, String> entries) {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            if (json.length() > 1) {
+                json.append(", ");
+            }
+            json.append('"').append(entry.getKey()).append("\": \"").append(entry.getValue()).append('"');
+        }
+        return json.append('}').toString();
+    }
+
+    /** Starts a public class with a default constructor calling {@code superName}'s. */
+    static ClassWriter newClass(String name, String superName) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, superName, null);
+        MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+        return cw;
+    }
+
+    /** Loads {@code className} from {@code jar} and calls its public static no-argument {@code method}. */
+    static Object invoke(File jar, String className, String method) throws Exception {
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {jar.toURI().toURL()}, null)) {
+            Method target = loader.loadClass(className).getMethod(method);
+            return target.invoke(null);
+        }
+    }
+}
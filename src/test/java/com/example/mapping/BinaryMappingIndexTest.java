@@ -0,0 +1,85 @@
+package com.example.mapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinaryMappingIndexTest {
+    /** Two units that map some of the same keys differently; the first entry must win in both indexes. */
+    private static final String MAPPING = "{\"proj\": {\n"
+            + " \"u1\": {\n"
+            + "  \"renamed_classes\": {\"La/b/C;\": \"C1\", \"LTop;\": \"Renamed\", \"L\u00e9/\u00dcn\u00ef;\": \"\u00c5\"},\n"
+            + "  \"renamed_methods\": {\"La/b/C;->m(I)V\": \"mInt\", \"La/b/C;->m(Ljava/lang/String;)V\": \"mString\","
+            + " \"LTop;->m()V\": \"topM\", \"L\u00e9/\u00dcn\u00ef;->\u00fc(L\u00e9/\u00dcn\u00ef;)V\": \"\u00fc2\"},\n"
+            + "  \"renamed_fields\": {\"La/b/C;->f:I\": \"fInt\", \"LTop;->f:J\": \"topF\","
+            + " \"L\u00e9/\u00dcn\u00ef;->\u00df:I\": \"\u00df2\"}\n"
+            + " },\n"
+            + " \"u2\": {\n"
+            + "  \"renamed_classes\": {\"La/b/C;\": \"C2\", \"La/b/D;\": \"D1\"},\n"
+            + "  \"renamed_methods\": {\"La/b/C;->m(I)V\": \"later\", \"La/b/D;->m(J)V\": \"mLong\"},\n"
+            + "  \"renamed_fields\": {\"La/b/C;->f:I\": \"later\", \"La/b/D;->f:Ljava/lang/String;\": \"fString\"}\n"
+            + " }\n"
+            + "}}\n";
+
+    private static final List<String> OWNERS = Arrays.asList(
+            "a.b.C", "a.b.D", "Top", "\u00e9.\u00dcn\u00ef", "a.b.Missing", null);
+    private static final List<String> METHOD_NAMES = Arrays.asList("m", "\u00fc", "missing");
+    private static final List<String> METHOD_DESCRIPTORS = Arrays.asList(
+            "(I)V", "(Ljava/lang/String;)V", "()V", "(J)V", "(L\u00e9/\u00dcn\u00ef;)V", "(Z)V", null);
+    private static final List<String> FIELD_NAMES = Arrays.asList("f", "\u00df", "missing");
+    private static final List<String> FIELD_DESCRIPTORS = Arrays.asList(
+            "I", "J", "Ljava/lang/String;", "Z", null);
+
+    @Test
+    void compiledIndexAnswersLikeTheHashIndex(@TempDir File dir) throws Exception {
+        File json = new File(dir, "codedata.txt");
+        Files.write(json.toPath(), MAPPING.getBytes(StandardCharsets.UTF_8));
+        File compiled = new File(dir, "codedata.idx");
+        BinaryMappingIndex.compile(json, compiled);
+
+        HashMappingIndex expected = HashMappingIndex.load(json);
+        BinaryMappingIndex actual = BinaryMappingIndex.open(compiled);
+
+        assertEquals(expected.classCount(), actual.classCount());
+        assertEquals(expected.methodCount(), actual.methodCount());
+        assertEquals(expected.fieldCount(), actual.fieldCount());
+        for (String name : Arrays.asList("a.b.C", "a.b.D", "Top", "\u00e9.\u00dcn\u00ef", "a.b", "C", "Missing")) {
+            assertEquals(expected.findClass(name), actual.findClass(name), name);
+        }
+        for (String owner : OWNERS) {
+            for (String name : METHOD_NAMES) {
+                for (String descriptor : METHOD_DESCRIPTORS) {
+                    assertEquals(expected.findMethod(owner, name, descriptor), actual.findMethod(owner, name, descriptor),
+                            owner + "." + name + descriptor);
+                }
+            }
+            for (String name : FIELD_NAMES) {
+                for (String descriptor : FIELD_DESCRIPTORS) {
+                    assertEquals(expected.findField(owner, name, descriptor), actual.findField(owner, name, descriptor),
+                            owner + "." + name + ":" + descriptor);
+                }
+            }
+        }
+
+        // Spot checks, so that both indexes agreeing on nothing cannot pass.
+        assertEquals("a.b.C1", actual.findClass("a.b.C"));
+        assertEquals("Renamed", actual.findClass("Top"));
+        assertEquals("\u00e9.\u00c5", actual.findClass("\u00e9.\u00dcn\u00ef"));
+        assertEquals("mInt", actual.findMethod("a.b.C", "m", "(I)V"));
+        assertEquals("mString", actual.findMethod("a.b.C", "m", "(Ljava/lang/String;)V"));
+        assertEquals("mLong", actual.findMethod("a.b.D", "m", "(J)V"));
+        assertEquals("\u00fc2", actual.findMethod(null, "\u00fc", null));
+        assertEquals("fInt", actual.findField("a.b.C", "f", null));
+        assertEquals("\u00df2", actual.findField("\u00e9.\u00dcn\u00ef", "\u00df", "I"));
+        assertNull(actual.findMethod("a.b.C", "missing", "(I)V"));
+        assertNull(actual.findClass("a.b"));
+    }
+}
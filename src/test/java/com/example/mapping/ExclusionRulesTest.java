@@ -0,0 +1,137 @@
+package com.example.mapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExclusionRulesTest {
+
+    @Test
+    void exactNameMatchesThatClassOnly() {
+        ExclusionRules rules = rules("com.foo.Bar");
+        assertTrue(rules.isExcluded("com.foo.Bar"));
+        assertTrue(rules.isExcluded("com/foo/Bar"));
+        assertFalse(rules.isExcluded("com.foo.Ba"));
+        assertFalse(rules.isExcluded("com.foo.BarX"));
+        assertFalse(rules.isExcluded("com.foo.Bar$Inner"));
+        assertFalse(rules.isExcluded("com.foo.Bar.Sub"));
+        assertFalse(rules.isExcluded("com.foo.Other"));
+    }
+
+    @Test
+    void packageRuleMatchesItsClassesButNotSubpackages() {
+        ExclusionRules rules = rules("com.foo.*");
+        assertTrue(rules.isExcluded("com.foo.Bar"));
+        assertTrue(rules.isExcluded("com/foo/Bar$Inner"));
+        assertFalse(rules.isExcluded("com.foo.sub.Bar"));
+        assertFalse(rules.isExcluded("com/foo/sub/Bar"));
+        assertFalse(rules.isExcluded("com.foox.Bar"));
+        assertFalse(rules.isExcluded("com.foo"));
+        assertFalse(rules.isExcluded("com.Bar"));
+    }
+
+    @Test
+    void subtreeRulesMatchThePackageAndEverythingBelowIt() {
+        for (String rule : Arrays.asList("com.bar.**", "com.bar.", "com/bar/**", "com/bar/")) {
+            ExclusionRules rules = rules(rule);
+            assertTrue(rules.isExcluded("com.bar.Q"), rule);
+            assertTrue(rules.isExcluded("com/bar/Q"), rule);
+            assertTrue(rules.isExcluded("com.bar.x.y.Q"), rule);
+            assertTrue(rules.isExcluded("com/bar/x/Q"), rule);
+            assertFalse(rules.isExcluded("com.barz.Q"), rule);
+            assertFalse(rules.isExcluded("com/barz/Q"), rule);
+            assertFalse(rules.isExcluded("com.ba.Q"), rule);
+            assertFalse(rules.isExcluded("com.Bar"), rule);
+            assertFalse(rules.isExcluded("org.com.bar.Q"), rule);
+        }
+    }
+
+    @Test
+    void globsMatchWithinAndAcrossPackages() {
+        ExclusionRules single = rules("com.*.Impl");
+        assertTrue(single.isExcluded("com.foo.Impl"));
+        assertTrue(single.isExcluded("com/foo/Impl"));
+        assertFalse(single.isExcluded("com.foo.bar.Impl"));
+        assertFalse(single.isExcluded("com.foo.ImplX"));
+
+        ExclusionRules across = rules("com.**.Impl");
+        assertTrue(across.isExcluded("com.foo.Impl"));
+        assertTrue(across.isExcluded("com/foo/bar/Impl"));
+        assertFalse(across.isExcluded("org.foo.Impl"));
+
+        ExclusionRules suffix = rules("com.foo.*Test");
+        assertTrue(suffix.isExcluded("com.foo.BarTest"));
+        assertFalse(suffix.isExcluded("com.foo.sub.BarTest"));
+        assertFalse(suffix.isExcluded("com.foo.BarTests"));
+
+        ExclusionRules question = rules("com.foo.R?");
+        assertTrue(question.isExcluded("com.foo.R1"));
+        assertTrue(question.isExcluded("com/foo/Rx"));
+        assertFalse(question.isExcluded("com.foo.R"));
+        assertFalse(question.isExcluded("com.foo.R12"));
+        assertFalse(rules("com.fo?.Bar").isExcluded("com.f.o.Bar"));
+
+        ExclusionRules defaultPackage = rules("*");
+        assertTrue(defaultPackage.isExcluded("Main"));
+        assertFalse(defaultPackage.isExcluded("com.Main"));
+    }
+
+    @Test
+    void regexRulesMatchTheWholeDottedName() {
+        ExclusionRules rules = rules("regex:com\\.foo\\.[A-Z]+\\$Companion");
+        assertTrue(rules.isExcluded("com.foo.BAR$Companion"));
+        assertTrue(rules.isExcluded("com/foo/BAR$Companion"));
+        assertFalse(rules.isExcluded("com.foo.Bar$Companion"));
+        assertFalse(rules.isExcluded("com.foo.BAR$Companion2"));
+        assertFalse(rules.isExcluded("x.com.foo.BAR$Companion"));
+    }
+
+    @Test
+    void invalidRulesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> rules("regex:("));
+        assertThrows(IllegalArgumentException.class, () -> rules("  "));
+    }
+
+    @Test
+    void rulesCombineWithPlatformRulesAndExtraClasses() {
+        ExclusionRules rules = ExclusionRules.platform().withClasses(Collections.singletonList("com.foo.Keep"));
+        assertTrue(rules.isExcluded("java.lang.String"));
+        assertTrue(rules.isExcluded("android/app/Activity"));
+        assertTrue(rules.isExcluded("com.foo.Keep"));
+        assertFalse(rules.isExcluded("javax2.Foo"));
+        assertFalse(rules.isExcluded("com.foo.Other"));
+    }
+
+    @Test
+    void readRulesSkipsCommentsAndBlankLines(@TempDir File dir) throws Exception {
+        File file = new File(dir, "keep.txt");
+        String text = "# classes kept by reflection\n"
+                + "com.foo.Bar\n"
+                + "\n"
+                + "   # indented comment\n"
+                + "  com/bar/**  \n"
+                + "regex:.*\\$Keep\n";
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Arrays.asList("com.foo.Bar", "com/bar/**", "regex:.*\\$Keep"), ExclusionRules.readRules(file));
+        ExclusionRules rules = ExclusionRules.compile(ExclusionRules.readRules(file));
+        assertTrue(rules.isExcluded("com.foo.Bar"));
+        assertTrue(rules.isExcluded("com.bar.x.Q"));
+        assertTrue(rules.isExcluded("a.B$Keep"));
+        assertFalse(rules.isExcluded("com.barz.Q"));
+    }
+
+    private static ExclusionRules rules(String... rules) {
+        return ExclusionRules.compile(Arrays.asList(rules));
+    }
+}